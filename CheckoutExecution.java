@@ -0,0 +1,104 @@
+package com.welhire.welhire_subscription_service.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Execution mode and bulkheads for the gateway-bound checkout paths (createHostedPage / checkPaymentStatus).
+ * - billing.checkout.virtual-threads.enabled=true: submit() runs each request on its own virtual thread
+ *   (CheckoutService.createHostedPageAsync / checkPaymentStatusAsync), so requests waiting on the gateway do not
+ *   hold servlet threads; only these paths are affected. Default: inline on the caller.
+ * - Gateway calls and DB phases each pass through a semaphore, so any number of concurrent checkouts
+ *   turns into at most gateway-max-concurrent provider calls and db-max-concurrent open transactions.
+ * - db-max-concurrent defaults to the Hikari pool size minus db-reserved-connections, leaving connections
+ *   for webhooks, background workers and nested work instead of letting checkouts drain the pool.
+ * Hot-path locks taken under these permits are ReentrantLocks (no virtual-thread pinning).
+ */
+@Slf4j
+@Component
+public class CheckoutExecution {
+
+    private final boolean virtualThreads;
+    private final ExecutorService executor;
+    private final Semaphore gatewayPermits;
+    private final Semaphore dbPermits;
+    private final Duration acquireTimeout;
+
+    public CheckoutExecution(
+            @Value("${billing.checkout.virtual-threads.enabled:false}") boolean virtualThreads,
+            @Value("${billing.checkout.gateway-max-concurrent:64}") int gatewayMaxConcurrent,
+            @Value("${billing.checkout.db-max-concurrent:0}") int dbMaxConcurrent,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${billing.checkout.db-reserved-connections:3}") int reservedConnections,
+            @Value("${billing.checkout.acquire-timeout:PT30S}") Duration acquireTimeout) {
+        int dbLimit = dbMaxConcurrent > 0 ? dbMaxConcurrent : Math.max(1, poolSize - reservedConnections);
+        if (dbLimit >= poolSize) {
+            log.warn("billing.checkout.db-max-concurrent={} is not below the connection pool size {}; "
+                    + "checkouts can take every pooled connection", dbLimit, poolSize);
+        }
+        this.virtualThreads = virtualThreads;
+        this.executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("checkout-vt-", 0).factory())
+                : null;
+        this.gatewayPermits = new Semaphore(Math.max(1, gatewayMaxConcurrent), true);
+        this.dbPermits = new Semaphore(dbLimit, true);
+        this.acquireTimeout = acquireTimeout;
+        log.info("Checkout execution: virtualThreads={}, gatewayMaxConcurrent={}, dbMaxConcurrent={} (pool size {})",
+                virtualThreads, gatewayMaxConcurrent, dbLimit, poolSize);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) executor.shutdown();
+    }
+
+    /** Run a request-level task: on its own virtual thread when enabled, otherwise inline (already completed). */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!virtualThreads) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /** Run a PaymentGateway call under the gateway concurrency limit. */
+    public <T> T callGateway(Supplier<T> call) {
+        return withPermit(gatewayPermits, "payment gateway", call);
+    }
+
+    /** Run a short DB transaction under the DB concurrency limit. */
+    public <T> T inTransactionSlot(Supplier<T> work) {
+        return withPermit(dbPermits, "database", work);
+    }
+
+    private <T> T withPermit(Semaphore permits, String what, Supplier<T> work) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + what + " capacity", e);
+        }
+        if (!acquired) {
+            throw new IllegalStateException("Too many concurrent checkouts; " + what + " busy, please retry");
+        }
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
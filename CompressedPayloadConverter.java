@@ -0,0 +1,83 @@
+package com.welhire.welhire_subscription_service.converter;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Transparent compression for large provider JSON payloads stored in text columns.
+ * - Payloads shorter than MIN_COMPRESS_CHARS are stored as-is.
+ * - Larger ones are stored as "dfl1:" + base64(raw deflate(UTF-8)); the header carries the format version.
+ * - Values without the header (existing rows, small payloads) are returned unchanged, so no migration is needed.
+ * Apply per attribute with @Convert(converter = CompressedPayloadConverter.class).
+ */
+@Converter
+public class CompressedPayloadConverter implements AttributeConverter<String, String> {
+
+    static final String HEADER = "dfl1:";
+    static final int MIN_COMPRESS_CHARS = 1024;
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        if (attribute == null || attribute.length() < MIN_COMPRESS_CHARS) {
+            return attribute;
+        }
+        byte[] compressed = deflate(attribute.getBytes(StandardCharsets.UTF_8));
+        String encoded = HEADER + Base64.getEncoder().encodeToString(compressed);
+        // Not worth it (already-compressed or tiny-entropy edge cases) → keep plain text
+        return encoded.length() < attribute.length() ? encoded : attribute;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        if (dbData == null || !dbData.startsWith(HEADER)) {
+            return dbData;
+        }
+        byte[] compressed = Base64.getDecoder().decode(dbData.substring(HEADER.length()));
+        return new String(inflate(compressed), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed payload");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.BillingEntitySubscription;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Bulk insert of initial FeatureUsage rows as ONE multi-row HQL insert (one statement, one round-trip), instead
+ * of one IDENTITY insert per entity. The statement is written against the FeatureUsage mapping (entity and
+ * attribute names), so Hibernate resolves table, columns and types and fails fast if the mapping changes.
+ * Runs in the caller's transaction. Rows are not loaded into the persistence context (no entity listeners run).
+ */
+@Repository
+public class FeatureUsageBatchRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /** One initial (unused) usage row per plan feature. */
+    public record NewFeatureUsage(String featureKey, Integer limitCount) {}
+
+    public int insertInitial(BillingEntitySubscription subscription, List<NewFeatureUsage> rows) {
+        if (subscription == null || rows.isEmpty()) return 0;
+
+        StringBuilder hql = new StringBuilder(
+                "insert into FeatureUsage (subscription, featureKey, limitCount, usedCount, isExhausted) values ");
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) hql.append(", ");
+            hql.append("(:subscription, :key").append(i).append(", :limit").append(i).append(", 0, false)");
+        }
+
+        Query insert = em.createQuery(hql.toString());
+        insert.setParameter("subscription", subscription);
+        for (int i = 0; i < rows.size(); i++) {
+            insert.setParameter("key" + i, rows.get(i).featureKey());
+            insert.setParameter("limit" + i, rows.get(i).limitCount());
+        }
+        return insert.executeUpdate();
+    }
+}
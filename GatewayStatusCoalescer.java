@@ -0,0 +1,101 @@
+package com.welhire.welhire_subscription_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of provider status lookups, keyed by provider hosted page id.
+ * - Concurrent callers for the same key share one in-flight provider call.
+ * - A successful result is reused for billing.gateway.status-coalesce.window (default 2s).
+ * - Failures (any Throwable) are not cached: the flight is failed and removed, the next caller retries the provider.
+ * - Followers wait at most billing.gateway.status-coalesce.join-timeout for the leader.
+ */
+@Slf4j
+@Component
+public class GatewayStatusCoalescer {
+
+    private final long windowMillis;
+    private final long joinTimeoutMillis;
+    private final ConcurrentHashMap<String, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    private static final class Flight<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        volatile long completedAt = Long.MAX_VALUE; // not completed yet → never stale
+    }
+
+    /** Result of a coalesced call; {@code leader} is true only for the caller that hit the provider. */
+    public record Coalesced<T>(T value, boolean leader) {}
+
+    public GatewayStatusCoalescer(
+            @Value("${billing.gateway.status-coalesce.window:PT2S}") Duration window,
+            @Value("${billing.gateway.status-coalesce.join-timeout:PT45S}") Duration joinTimeout) {
+        this.windowMillis = window.toMillis();
+        this.joinTimeoutMillis = joinTimeout.toMillis();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Coalesced<T> get(String key, Supplier<T> call) {
+        while (true) {
+            Flight<T> existing = (Flight<T>) flights.get(key);
+            if (existing != null && !isStale(existing)) {
+                return new Coalesced<>(join(existing), false);
+            }
+
+            Flight<T> mine = new Flight<>();
+            boolean won = existing == null
+                    ? flights.putIfAbsent(key, mine) == null
+                    : flights.replace(key, existing, mine);
+            if (!won) {
+                continue; // someone else started a flight first → join theirs
+            }
+
+            try {
+                T value = call.get();
+                mine.completedAt = System.currentTimeMillis();
+                mine.future.complete(value);
+                if (windowMillis <= 0) flights.remove(key, mine);
+                return new Coalesced<>(value, true);
+            } catch (Throwable t) {
+                // Errors too: a flight left incomplete would never go stale and block the key
+                flights.remove(key, mine);
+                mine.future.completeExceptionally(t);
+                throw t;
+            }
+        }
+    }
+
+    /** Drop completed flights whose reuse window has passed. */
+    @Scheduled(fixedDelayString = "${billing.gateway.status-coalesce.purge-interval:PT1M}")
+    public void purge() {
+        flights.entrySet().removeIf(e -> isStale(e.getValue()));
+    }
+
+    private boolean isStale(Flight<?> f) {
+        return f.future.isDone() && System.currentTimeMillis() - f.completedAt >= windowMillis;
+    }
+
+    private <T> T join(Flight<T> f) {
+        try {
+            return f.future.get(joinTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException("Provider status lookup failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for a concurrent provider status lookup");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a provider status lookup", e);
+        }
+    }
+}
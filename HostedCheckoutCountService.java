@@ -0,0 +1,184 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.entity.HostedCheckoutStatusCount;
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutStatusCountRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-(tenantId, billingId, status) counters for hosted checkouts in COMPLETED / FAILED.
+ * - A tenant+billing is counted only once its INIT_MARKER row exists; until then exactTotal() is empty and the
+ *   caller falls back to a COUNT query. initializePending() recounts uninitialized keys in the background.
+ * - recordTransition(): called in the transaction that moved HostedCheckout.status (after a conditional UPDATE
+ *   that actually changed the row); it holds a shared advisory lock on the key, initialization an exclusive one,
+ *   so a transition is either included in the recount or applied on top of it, never both.
+ * - The full scan for uninitialized keys runs only until it comes back empty (again after rebuildAll()); after
+ *   that, keys are initialized when exactTotal() misses on them (new tenant/billing pairs).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HostedCheckoutCountService {
+
+    public static final Set<String> COUNTED_STATUSES = Set.of("COMPLETED", "FAILED");
+
+    /** Status value of the per-key row that marks counters as initialized (its total is unused). */
+    static final String INIT_MARKER = "_INITIALIZED";
+
+    private final HostedCheckoutStatusCountRepository countRepo;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${billing.transaction-counts.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    @Value("${billing.transaction-counts.init-batch-size:200}")
+    private int initBatchSize;
+
+    private TransactionTemplate tx;
+
+    // True until a scan of hosted_checkout finds no uninitialized key; reset by rebuildAll()
+    private volatile boolean scanPending = true;
+    // Keys that missed in exactTotal(), initialized on the next run without scanning
+    private final Set<Key> requested = ConcurrentHashMap.newKeySet();
+
+    private record Key(String tenantId, String billingId) {}
+
+    @PostConstruct
+    void initTransactions() {
+        tx = new TransactionTemplate(txManager);
+    }
+
+    /**
+     * Adjust counters for a row this transaction moved from one local status to another
+     * (no-op if nothing counted changes or the key is not initialized yet).
+     */
+    @Transactional
+    public void recordTransition(String tenantId, String billingId, String from, String to) {
+        if (!StringUtils.hasText(tenantId) || !StringUtils.hasText(billingId)) return;
+        String f = norm(from);
+        String t = norm(to);
+        if (Objects.equals(f, t)) return;
+        if (!COUNTED_STATUSES.contains(f) && !COUNTED_STATUSES.contains(t)) return;
+
+        countRepo.lockKeyShared(lockKey(tenantId, billingId));
+        if (!countRepo.existsByTenantIdAndBillingIdAndStatus(tenantId, billingId, INIT_MARKER)) {
+            return; // initialization will count this row (it waits for our commit)
+        }
+        if (COUNTED_STATUSES.contains(f)) {
+            countRepo.addToCount(tenantId, billingId, f, -1);
+        }
+        if (COUNTED_STATUSES.contains(t)) {
+            countRepo.addToCount(tenantId, billingId, t, 1);
+        }
+    }
+
+    /**
+     * Exact total for the given statuses from counters; empty while this tenant+billing is not initialized
+     * (caller falls back to a COUNT query).
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> exactTotal(String tenantId, String billingId, Collection<String> statuses) {
+        Set<String> wanted = new HashSet<>(statuses);
+        wanted.add(INIT_MARKER);
+        List<HostedCheckoutStatusCount> rows = countRepo.findByTenantIdAndBillingIdAndStatusIn(tenantId, billingId, wanted);
+        boolean initialized = false;
+        long sum = 0;
+        for (HostedCheckoutStatusCount r : rows) {
+            if (INIT_MARKER.equals(r.getStatus())) {
+                initialized = true;
+            } else {
+                sum += r.getTotal();
+            }
+        }
+        if (!initialized) {
+            requested.add(new Key(tenantId, billingId));
+            return Optional.empty();
+        }
+        return Optional.of(sum);
+    }
+
+    /**
+     * Recount uninitialized keys: from a scan of hosted_checkout while one is pending (startup, rebuildAll()),
+     * then only the keys exactTotal() asked for. Once the scan comes back empty it is not repeated.
+     */
+    @Scheduled(fixedDelayString = "${billing.transaction-counts.init-interval:PT1M}")
+    public void initializePending() {
+        Set<Key> keys = new LinkedHashSet<>();
+        if (scanPending) {
+            countRepo.findUninitializedKeys(INIT_MARKER, initBatchSize)
+                    .forEach(k -> keys.add(new Key(k.getTenantId(), k.getBillingId())));
+            if (keys.isEmpty()) {
+                scanPending = false;
+                log.info("All hosted checkout status counter keys are initialized; stopping the scan");
+            }
+        }
+        for (Iterator<Key> it = requested.iterator(); it.hasNext(); ) {
+            keys.add(it.next());
+            it.remove();
+        }
+        if (keys.isEmpty()) return;
+
+        int done = 0;
+        for (Key k : keys) {
+            try {
+                if (Boolean.TRUE.equals(tx.execute(s -> initialize(k.tenantId(), k.billingId())))) {
+                    done++;
+                }
+            } catch (RuntimeException e) {
+                requested.add(k); // retried on the next run
+                log.warn("Counter init failed for tenant={} billingId={}: {}", k.tenantId(), k.billingId(), e.getMessage());
+            }
+        }
+        if (done > 0) {
+            log.info("Initialized hosted checkout status counters for {} tenant/billing keys", done);
+        }
+    }
+
+    /** Drop all initialization markers; totals fall back to COUNT until initializePending() recounts each key. */
+    @Transactional
+    public int rebuildAll() {
+        int n = countRepo.deleteMarkers(INIT_MARKER);
+        scanPending = true;
+        log.info("Reset {} hosted checkout status counter keys for recount", n);
+        return n;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void onStartup() {
+        if (rebuildOnStartup) {
+            rebuildAll();
+        }
+    }
+
+    // Runs in its own transaction; skipped when another node is initializing the same key
+    private boolean initialize(String tenantId, String billingId) {
+        if (!countRepo.tryLockKeyExclusive(lockKey(tenantId, billingId))) return false;
+        if (countRepo.existsByTenantIdAndBillingIdAndStatus(tenantId, billingId, INIT_MARKER)) return false;
+        countRepo.resetCounts(tenantId, billingId);
+        countRepo.countFromHostedCheckout(tenantId, billingId, COUNTED_STATUSES);
+        countRepo.addToCount(tenantId, billingId, INIT_MARKER, 0);
+        return true;
+    }
+
+    private static String lockKey(String tenantId, String billingId) {
+        return "hc-count:" + tenantId + ":" + billingId;
+    }
+
+    private String norm(String s) {
+        return s == null ? null : s.trim().toUpperCase(Locale.ROOT);
+    }
+}
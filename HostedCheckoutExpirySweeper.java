@@ -0,0 +1,67 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Moves PENDING / CREATED hosted checkouts to EXPIRED once expiringTime + grace has passed,
+ * in set-based batches (one UPDATE per batch, one short transaction each).
+ * EXPIRED is not a counted status (HostedCheckoutCountService), so counters are unaffected.
+ * A provider SUCCESS arriving later still overrides the local EXPIRED.
+ * No order lock is taken: rows a webhook / poll has loaded are row-locked and skipped, and a webhook that loads the
+ * row after the sweep sees EXPIRED and moves it by compare-and-set (CheckoutService.updateLocalStatus).
+ * Opt-in (billing.expiry-sweep.enabled), like the pending-checkout reconciler.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HostedCheckoutExpirySweeper {
+
+    private final HostedCheckoutRepository hostedRepo;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${billing.expiry-sweep.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.expiry-sweep.grace:PT15M}")
+    private Duration grace;
+
+    @Value("${billing.expiry-sweep.batch-size:500}")
+    private int batchSize;
+
+    @Value("${billing.expiry-sweep.max-batches:20}")
+    private int maxBatches;
+
+    private TransactionTemplate tx;
+
+    @PostConstruct
+    void start() {
+        tx = new TransactionTemplate(txManager);
+    }
+
+    @Scheduled(fixedDelayString = "${billing.expiry-sweep.interval:PT1M}")
+    public void sweep() {
+        if (!enabled) return;
+
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(grace);
+        int total = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            Integer n = tx.execute(s -> hostedRepo.expireOpenBefore(cutoff, batchSize));
+            total += n == null ? 0 : n;
+            if (n == null || n < batchSize) break;
+        }
+        if (total > 0) {
+            log.info("Expired {} hosted checkouts past expiringTime (grace={})", total, grace);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.welhire.welhire_subscription_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Payment details extracted once from the provider payload of a HostedCheckout (side table keyed by orderId).
+ * Lets the transaction listing read plain columns instead of parsing response_payload_json per row.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+@Entity
+@Table(
+    name = "hosted_checkout_payment",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_hc_payment_order_id", columnNames = "order_id")
+    }
+)
+public class HostedCheckoutPayment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false, length = 64)
+    private String orderId;
+
+    @Column(name = "invoice_id", length = 64)
+    private String invoiceId;
+
+    @Column(name = "amount", precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(name = "currency", length = 8)
+    private String currency;
+
+    @Column(name = "email")
+    private String email;
+
+    @Column(name = "payment_method", length = 64)
+    private String paymentMethod;
+
+    // As sent by the provider (e.g. "2025-10-21")
+    @Column(name = "payment_date", length = 40)
+    private String paymentDate;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+}
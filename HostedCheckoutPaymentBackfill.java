@@ -0,0 +1,59 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.entity.HostedCheckout;
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutPaymentRepository;
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Backfills hosted_checkout_payment for COMPLETED / FAILED rows written before payment fields were persisted,
+ * by parsing their legacy merged response_payload_json once. Enabled with billing.payment-extract.backfill.enabled.
+ * One node runs a batch at a time (advisory lock held until the batch commits); the others skip that run.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HostedCheckoutPaymentBackfill {
+
+    private static final List<String> STATUSES = List.of("COMPLETED", "FAILED");
+
+    private static final String JOB_LOCK_KEY = "hosted-checkout-payment-backfill";
+
+    private final HostedCheckoutRepository hostedRepo;
+    private final HostedCheckoutPaymentRepository paymentRepo;
+    private final HostedCheckoutPaymentService paymentService;
+    private final PaymentPayloadExtractor extractor;
+
+    @Value("${billing.payment-extract.backfill.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.payment-extract.backfill.batch-size:200}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${billing.payment-extract.backfill.delay:PT1M}")
+    @Transactional
+    public void runBatch() {
+        if (!enabled) return;
+        if (!paymentRepo.tryJobLock(JOB_LOCK_KEY)) {
+            log.debug("Payment backfill running on another node; skipping this run");
+            return;
+        }
+
+        List<HostedCheckout> rows = hostedRepo.findMissingPaymentDetails(STATUSES, PageRequest.of(0, batchSize));
+        if (rows.isEmpty()) return;
+
+        // Always write a row (possibly all-null) so unparseable payloads are not rescanned forever
+        for (HostedCheckout hc : rows) {
+            paymentService.save(hc.getOrderId(), extractor.extractFromMerged(hc.getResponsePayloadJson()));
+        }
+        log.info("Backfilled payment details for {} hosted checkouts", rows.size());
+    }
+}
@@ -0,0 +1,54 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.HostedCheckoutPayment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface HostedCheckoutPaymentRepository extends JpaRepository<HostedCheckoutPayment, Long> {
+    Optional<HostedCheckoutPayment> findByOrderId(String orderId);
+    List<HostedCheckoutPayment> findByOrderIdIn(Collection<String> orderIds);
+
+    /**
+     * Atomic upsert on uk_hc_payment_order_id: non-null arguments overwrite, null ones keep the stored value.
+     * Explicit casts keep null binds typed.
+     */
+    @Modifying
+    @Query(value = """
+                INSERT INTO hosted_checkout_payment
+                    (order_id, invoice_id, amount, currency, email, payment_method, payment_date, updated_at)
+                VALUES (:orderId,
+                        CAST(:invoiceId AS varchar), CAST(:amount AS numeric), CAST(:currency AS varchar),
+                        CAST(:email AS varchar), CAST(:paymentMethod AS varchar), CAST(:paymentDate AS varchar),
+                        :updatedAt)
+                ON CONFLICT (order_id) DO UPDATE SET
+                    invoice_id     = COALESCE(EXCLUDED.invoice_id, hosted_checkout_payment.invoice_id),
+                    amount         = COALESCE(EXCLUDED.amount, hosted_checkout_payment.amount),
+                    currency       = COALESCE(EXCLUDED.currency, hosted_checkout_payment.currency),
+                    email          = COALESCE(EXCLUDED.email, hosted_checkout_payment.email),
+                    payment_method = COALESCE(EXCLUDED.payment_method, hosted_checkout_payment.payment_method),
+                    payment_date   = COALESCE(EXCLUDED.payment_date, hosted_checkout_payment.payment_date),
+                    updated_at     = EXCLUDED.updated_at
+            """, nativeQuery = true)
+    int upsert(@Param("orderId") String orderId,
+               @Param("invoiceId") String invoiceId,
+               @Param("amount") BigDecimal amount,
+               @Param("currency") String currency,
+               @Param("email") String email,
+               @Param("paymentMethod") String paymentMethod,
+               @Param("paymentDate") String paymentDate,
+               @Param("updatedAt") OffsetDateTime updatedAt);
+
+    /**
+     * Transaction-scoped, non-blocking cluster-wide lock for a background job; false when another node holds it.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(hashtext(:key))", nativeQuery = true)
+    boolean tryJobLock(@Param("key") String key);
+}
@@ -0,0 +1,74 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.entity.HostedCheckout;
+import com.welhire.welhire_subscription_service.entity.HostedCheckoutPayment;
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutPaymentRepository;
+import com.welhire.welhire_subscription_service.service.PaymentPayloadExtractor.PaymentExtract;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Maintains hosted_checkout_payment: structured payment fields extracted at write time
+ * (webhook / status check) so reads become a plain lookup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HostedCheckoutPaymentService {
+
+    private final HostedCheckoutPaymentRepository paymentRepo;
+    private final PaymentPayloadExtractor extractor;
+
+    /** Extract from a single provider payload and upsert onto the order's row. */
+    @Transactional
+    public void record(HostedCheckout hc, String rawPayload) {
+        if (hc == null || !StringUtils.hasText(hc.getOrderId())) return;
+        save(hc.getOrderId(), extractor.extract(rawPayload));
+    }
+
+    /** Same as record(hc, raw) for a payload whose fields were already extracted (e.g. ParsedWebhook). */
+    @Transactional
+    public void record(HostedCheckout hc, PaymentExtract pe) {
+        if (hc == null || !StringUtils.hasText(hc.getOrderId()) || pe == null) return;
+        save(hc.getOrderId(), pe);
+    }
+
+    /**
+     * Upsert in one statement (ON CONFLICT on order_id, so concurrent writers for one order cannot collide):
+     * fields present in the new extract overwrite, absent ones keep their previous value
+     * (a later non-payment payload must not blank out payment details).
+     */
+    @Transactional
+    public void save(String orderId, PaymentExtract pe) {
+        paymentRepo.upsert(
+                orderId,
+                textOrNull(pe.getInvoiceId()),
+                pe.getAmount(),
+                textOrNull(pe.getCurrency()),
+                textOrNull(pe.getEmail()),
+                textOrNull(pe.getPaymentMethod()),
+                textOrNull(pe.getDate()),
+                OffsetDateTime.now());
+    }
+
+    /** Rows for a page of orders in one query, keyed by orderId. */
+    @Transactional(readOnly = true)
+    public Map<String, HostedCheckoutPayment> findByOrderIds(Collection<String> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) return Map.of();
+        Map<String, HostedCheckoutPayment> out = new HashMap<>(orderIds.size() * 2);
+        for (HostedCheckoutPayment p : paymentRepo.findByOrderIdIn(orderIds)) {
+            out.put(p.getOrderId(), p);
+        }
+        return out;
+    }
+
+    private static String textOrNull(String s) {
+        return StringUtils.hasText(s) ? s : null;
+    }
+}
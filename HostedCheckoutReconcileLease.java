@@ -0,0 +1,30 @@
+package com.welhire.welhire_subscription_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Reconciler claim per open checkout order: PendingCheckoutReconciler does not pick the order again
+ * (on any node) before nextCheckAt. Written when the order is claimed, so it doubles as a re-check interval.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+@Entity
+@Table(
+    name = "hosted_checkout_reconcile_lease",
+    indexes = @Index(name = "idx_hc_reconcile_lease_next", columnList = "next_check_at")
+)
+public class HostedCheckoutReconcileLease {
+
+    @Id
+    @Column(name = "order_id", nullable = false, length = 64)
+    private String orderId;
+
+    @Column(name = "next_check_at", nullable = false)
+    private OffsetDateTime nextCheckAt;
+
+    @Column(name = "checks", nullable = false)
+    private int checks;
+}
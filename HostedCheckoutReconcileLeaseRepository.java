@@ -0,0 +1,70 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.HostedCheckoutReconcileLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface HostedCheckoutReconcileLeaseRepository extends JpaRepository<HostedCheckoutReconcileLease, String> {
+
+    /** Order to reconcile and its gateway. */
+    interface ReconcileCandidate {
+        String getOrderId();
+        String getGateway();
+    }
+
+    /**
+     * Lock up to :limit open checkouts the provider can be asked about, soonest-expiring first, whose lease is
+     * due (or that were never checked). Rows that expired before :expiredBefore are left to the expiry sweep.
+     * SKIP LOCKED lets other nodes claim a disjoint set at the same time; the caller writes the leases
+     * in the same transaction.
+     */
+    @Query(value = """
+                SELECT h.order_id AS orderId, h.gateway AS gateway
+                FROM hosted_checkout h
+                LEFT JOIN hosted_checkout_reconcile_lease l ON l.order_id = h.order_id
+                WHERE h.status IN (:statuses)
+                  AND h.provider_hostedpage_id IS NOT NULL
+                  AND h.created_at < :createdBefore
+                  AND (h.expiring_time IS NULL OR h.expiring_time >= :expiredBefore)
+                  AND (l.next_check_at IS NULL OR l.next_check_at <= :now)
+                ORDER BY h.expiring_time ASC NULLS LAST, h.id
+                LIMIT :limit
+                FOR UPDATE OF h SKIP LOCKED
+            """, nativeQuery = true)
+    List<ReconcileCandidate> lockDueCandidates(@Param("statuses") Collection<String> statuses,
+                                               @Param("createdBefore") OffsetDateTime createdBefore,
+                                               @Param("expiredBefore") OffsetDateTime expiredBefore,
+                                               @Param("now") OffsetDateTime now,
+                                               @Param("limit") int limit);
+
+    /**
+     * Claim (or re-claim) one order until :nextCheckAt.
+     */
+    @Modifying
+    @Query(value = """
+                INSERT INTO hosted_checkout_reconcile_lease (order_id, next_check_at, checks)
+                VALUES (:orderId, :nextCheckAt, 1)
+                ON CONFLICT (order_id) DO UPDATE
+                SET next_check_at = EXCLUDED.next_check_at,
+                    checks = hosted_checkout_reconcile_lease.checks + 1
+            """, nativeQuery = true)
+    int lease(@Param("orderId") String orderId, @Param("nextCheckAt") OffsetDateTime nextCheckAt);
+
+    /**
+     * Drop leases of orders that are no longer open (housekeeping).
+     */
+    @Modifying
+    @Query(value = """
+                DELETE FROM hosted_checkout_reconcile_lease l
+                USING hosted_checkout h
+                WHERE h.order_id = l.order_id
+                  AND h.status NOT IN (:statuses)
+            """, nativeQuery = true)
+    int deleteClosed(@Param("statuses") Collection<String> statuses);
+}
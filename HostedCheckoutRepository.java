@@ -2,24 +2,143 @@ package com.welhire.welhire_subscription_service.repository;
 
 import com.welhire.welhire_subscription_service.entity.HostedCheckout;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface HostedCheckoutRepository extends JpaRepository<HostedCheckout, Long> {
     Optional<HostedCheckout> findByOrderId(String orderId);
+
+    /**
+     * Load for a status change: the row stays locked until commit, so the expiry sweep (SKIP LOCKED) and
+     * other writers cannot move it underneath the loaded entity.
+     */
+    @Query(value = "SELECT * FROM hosted_checkout WHERE order_id = :orderId FOR UPDATE", nativeQuery = true)
+    Optional<HostedCheckout> findByOrderIdForUpdate(@Param("orderId") String orderId);
+
     Optional<HostedCheckout> findByProviderHostedpageId(String hostedpageId);
     Optional<HostedCheckout> findFirstByProviderHostedpageId(String providerHostedpageId);
     Optional<HostedCheckout> findFirstByProviderDecryptedHostedpageId(String providerDecryptedHostedpageId);
     List<HostedCheckout> findAllByTenantIdAndBillingIdOrderByCreatedAtDesc(String tenantId, String billingId);
 
+    /**
+     * Correlation without loading the entity (so it can be loaded fresh after taking the order lock).
+     */
+    @Query("SELECT h.orderId FROM HostedCheckout h WHERE h.providerDecryptedHostedpageId = :hostedpageId ORDER BY h.id")
+    List<String> findOrderIdsByProviderDecryptedHostedpageId(@Param("hostedpageId") String hostedpageId);
+
+    @Query("SELECT h.orderId FROM HostedCheckout h WHERE h.providerHostedpageId = :hostedpageId ORDER BY h.id")
+    List<String> findOrderIdsByProviderHostedpageId(@Param("hostedpageId") String hostedpageId);
+
     Page<HostedCheckout> findByTenantIdAndBillingIdAndStatusIn(
             String tenantId,
             String billingId,
             Collection<String> statuses,
             Pageable pageable
     );
+
+    /**
+     * Same filter as findByTenantIdAndBillingIdAndStatusIn, but as a Slice (no COUNT query).
+     */
+    Slice<HostedCheckout> findSliceByTenantIdAndBillingIdAndStatusIn(
+            String tenantId,
+            String billingId,
+            Collection<String> statuses,
+            Pageable pageable
+    );
+
+    long countByTenantIdAndBillingIdAndStatusIn(String tenantId, String billingId, Collection<String> statuses);
+
+    /**
+     * Keyset pagination — first page (newest first, no COUNT query). Use Pageable only as a LIMIT.
+     */
+    List<HostedCheckout> findByTenantIdAndBillingIdAndStatusInOrderByCreatedAtDescIdDesc(
+            String tenantId,
+            String billingId,
+            Collection<String> statuses,
+            Pageable limit
+    );
+
+    /**
+     * Keyset pagination — rows strictly after the (createdAt, id) cursor in (createdAt DESC, id DESC) order.
+     */
+    @Query("""
+                SELECT h
+                FROM HostedCheckout h
+                WHERE h.tenantId = :tenantId
+                  AND h.billingId = :billingId
+                  AND h.status IN :statuses
+                  AND (h.createdAt < :createdAt OR (h.createdAt = :createdAt AND h.id < :id))
+                ORDER BY h.createdAt DESC, h.id DESC
+            """)
+    List<HostedCheckout> findPageAfter(
+            @Param("tenantId") String tenantId,
+            @Param("billingId") String billingId,
+            @Param("statuses") Collection<String> statuses,
+            @Param("createdAt") OffsetDateTime createdAt,
+            @Param("id") Long id,
+            Pageable limit
+    );
+
+    /**
+     * Rows in the given statuses that have a provider payload but no hosted_checkout_payment row yet (backfill).
+     */
+    @Query("""
+                SELECT h
+                FROM HostedCheckout h
+                WHERE h.status IN :statuses
+                  AND h.responsePayloadJson IS NOT NULL
+                  AND NOT EXISTS (SELECT 1 FROM HostedCheckoutPayment p WHERE p.orderId = h.orderId)
+                ORDER BY h.id
+            """)
+    List<HostedCheckout> findMissingPaymentDetails(@Param("statuses") Collection<String> statuses, Pageable limit);
+
+    /**
+     * Expiry sweep: mark up to :limit open rows whose expiring_time is before :cutoff as EXPIRED (one statement).
+     * Webhook / poll / page-creation paths hold the row lock (findByOrderIdForUpdate) for their whole transaction,
+     * so SKIP LOCKED leaves rows they are working on for the next run; the status condition is re-checked on
+     * the locked row, so a row that left PENDING / CREATED meanwhile is never overwritten.
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE hosted_checkout
+                SET status = 'EXPIRED'
+                WHERE status IN ('PENDING', 'CREATED')
+                  AND id IN (
+                    SELECT id
+                    FROM hosted_checkout
+                    WHERE status IN ('PENDING', 'CREATED')
+                      AND expiring_time < :cutoff
+                    ORDER BY expiring_time
+                    LIMIT :limit
+                    FOR UPDATE SKIP LOCKED
+                )
+            """, nativeQuery = true)
+    int expireOpenBefore(@Param("cutoff") OffsetDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * Compare-and-set of the local status; 1 when this call moved the row from :from to :to, 0 when the row
+     * no longer has :from (another node / transaction changed it first). Status counters use the row count.
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE hosted_checkout
+                SET status = :to
+                WHERE id = :id AND status = :from
+            """, nativeQuery = true)
+    int updateStatusIf(@Param("id") Long id, @Param("from") String from, @Param("to") String to);
+
+    /**
+     * Current status with the row locked until commit (re-read after a lost compare-and-set).
+     */
+    @Query(value = "SELECT status FROM hosted_checkout WHERE id = :id FOR UPDATE", nativeQuery = true)
+    String lockStatus(@Param("id") Long id);
 }
@@ -0,0 +1,37 @@
+package com.welhire.welhire_subscription_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Running number of hosted checkouts per (tenantId, billingId, status).
+ * Maintained on local status transitions so transaction pages can report exact totals without a COUNT query.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+@Entity
+@Table(
+    name = "hosted_checkout_status_count",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_hc_status_count_key", columnNames = {"tenant_id", "billing_id", "status"})
+    }
+)
+public class HostedCheckoutStatusCount {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "tenant_id", nullable = false)
+    private String tenantId;
+
+    @Column(name = "billing_id", nullable = false)
+    private String billingId;
+
+    @Column(name = "status", nullable = false, length = 32)
+    private String status;
+
+    @Column(name = "total", nullable = false)
+    private long total;
+}
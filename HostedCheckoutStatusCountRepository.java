@@ -0,0 +1,108 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.HostedCheckoutStatusCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface HostedCheckoutStatusCountRepository extends JpaRepository<HostedCheckoutStatusCount, Long> {
+
+    List<HostedCheckoutStatusCount> findByTenantIdAndBillingIdAndStatusIn(
+            String tenantId, String billingId, Collection<String> statuses);
+
+    boolean existsByTenantIdAndBillingIdAndStatus(String tenantId, String billingId, String status);
+
+    /** (tenantId, billingId) pair of hosted_checkout rows. */
+    interface CounterKey {
+        String getTenantId();
+        String getBillingId();
+    }
+
+    /**
+     * Up to :limit (tenant, billing) pairs that have hosted checkouts but no :marker row yet.
+     */
+    @Query(value = """
+                SELECT DISTINCT h.tenant_id AS tenantId, h.billing_id AS billingId
+                FROM hosted_checkout h
+                WHERE h.tenant_id IS NOT NULL
+                  AND h.billing_id IS NOT NULL
+                  AND NOT EXISTS (
+                      SELECT 1
+                      FROM hosted_checkout_status_count c
+                      WHERE c.tenant_id = h.tenant_id
+                        AND c.billing_id = h.billing_id
+                        AND c.status = :marker
+                  )
+                LIMIT :limit
+            """, nativeQuery = true)
+    List<CounterKey> findUninitializedKeys(@Param("marker") String marker, @Param("limit") int limit);
+
+    /**
+     * Shared transaction-scoped lock on one counter key; taken by every status transition before it
+     * looks at the marker, so an initialization (exclusive) never interleaves with a transition.
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock_shared(hashtext(:key))) l", nativeQuery = true)
+    Integer lockKeyShared(@Param("key") String key);
+
+    /**
+     * Exclusive transaction-scoped lock on one counter key without waiting; false when another node holds it.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(hashtext(:key))", nativeQuery = true)
+    boolean tryLockKeyExclusive(@Param("key") String key);
+
+    /**
+     * Atomically add delta to the counter row, creating it on first use.
+     */
+    @Modifying
+    @Query(value = """
+                INSERT INTO hosted_checkout_status_count (tenant_id, billing_id, status, total)
+                VALUES (:tenantId, :billingId, :status, GREATEST(:delta, 0))
+                ON CONFLICT (tenant_id, billing_id, status)
+                DO UPDATE SET total = GREATEST(hosted_checkout_status_count.total + :delta, 0)
+            """, nativeQuery = true)
+    int addToCount(@Param("tenantId") String tenantId,
+                   @Param("billingId") String billingId,
+                   @Param("status") String status,
+                   @Param("delta") long delta);
+
+    /**
+     * Zero every counter of one tenant+billing (before recounting it).
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE hosted_checkout_status_count
+                SET total = 0
+                WHERE tenant_id = :tenantId AND billing_id = :billingId
+            """, nativeQuery = true)
+    int resetCounts(@Param("tenantId") String tenantId, @Param("billingId") String billingId);
+
+    /**
+     * Recount one tenant+billing from hosted_checkout.
+     */
+    @Modifying
+    @Query(value = """
+                INSERT INTO hosted_checkout_status_count (tenant_id, billing_id, status, total)
+                SELECT h.tenant_id, h.billing_id, h.status, COUNT(*)
+                FROM hosted_checkout h
+                WHERE h.tenant_id = :tenantId
+                  AND h.billing_id = :billingId
+                  AND h.status IN (:statuses)
+                GROUP BY h.tenant_id, h.billing_id, h.status
+                ON CONFLICT (tenant_id, billing_id, status)
+                DO UPDATE SET total = EXCLUDED.total
+            """, nativeQuery = true)
+    int countFromHostedCheckout(@Param("tenantId") String tenantId,
+                                @Param("billingId") String billingId,
+                                @Param("statuses") Collection<String> statuses);
+
+    /**
+     * Drop every initialization marker (counters are recounted key by key afterwards).
+     */
+    @Modifying
+    @Query(value = "DELETE FROM hosted_checkout_status_count WHERE status = :marker", nativeQuery = true)
+    int deleteMarkers(@Param("marker") String marker);
+}
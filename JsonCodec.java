@@ -0,0 +1,56 @@
+package com.welhire.welhire_subscription_service.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared JSON codec on top of the Spring-configured ObjectMapper.
+ * ObjectReader / ObjectWriter instances are immutable and thread-safe: they are built once per shape
+ * (generic JSON object, typed DTOs) and reused, instead of a new ObjectMapper or a per-call
+ * type resolution. Provider payment payloads are read with JsonPathExtractor (streaming) instead.
+ */
+@Component
+public class JsonCodec {
+
+    private static final TypeReference<Map<String, Object>> OBJECT_MAP = new TypeReference<>() {};
+
+    private final ObjectReader objectMapReader;
+    private final ObjectWriter objectMapWriter;
+    private final ObjectMapper mapper;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public JsonCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.objectMapReader = mapper.readerFor(OBJECT_MAP);
+        this.objectMapWriter = mapper.writerFor(OBJECT_MAP);
+    }
+
+    /** JSON object (e.g. a stored hosted-page request payload) → Map. */
+    public Map<String, Object> readObjectMap(String json) throws IOException {
+        return objectMapReader.readValue(json);
+    }
+
+    /** Map (e.g. a hosted-page request payload) → JSON. */
+    public String writeObjectMap(Map<String, ?> value) throws JsonProcessingException {
+        return objectMapWriter.writeValueAsString(value);
+    }
+
+    /** Reader bound to one DTO type, built once per type. */
+    public ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    /** Writer bound to one DTO type, built once per type. */
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, mapper::writerFor);
+    }
+}
@@ -0,0 +1,154 @@
+package com.welhire.welhire_subscription_service.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Single-pass extractor for a fixed set of JSON paths, built on Jackson's streaming JsonParser.
+ * No tree/Map is built: subtrees that no declared path goes through are skipped.
+ *
+ * Path syntax: dot-separated field names with optional array indexes,
+ * e.g. "payment.invoices[0].hosted_page_id". Compile once (static final), reuse across threads.
+ */
+public final class JsonPathExtractor {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final byte ABSENT = 0, SCALAR = 1, OBJECT = 2, ARRAY = 3;
+
+    private final Node root = new Node();
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private JsonPathExtractor(String... paths) {
+        for (String path : paths) {
+            if (slots.containsKey(path)) continue;
+            Node n = root;
+            for (String part : path.split("\\.")) {
+                int br = part.indexOf('[');
+                String name = br < 0 ? part : part.substring(0, br);
+                if (!name.isEmpty()) {
+                    n = n.byName.computeIfAbsent(name, k -> new Node());
+                }
+                while (br >= 0) {
+                    int close = part.indexOf(']', br);
+                    int idx = Integer.parseInt(part.substring(br + 1, close));
+                    n = n.byIndex.computeIfAbsent(idx, k -> new Node());
+                    br = part.indexOf('[', close);
+                }
+            }
+            n.slot = slots.size();
+            slots.put(path, n.slot);
+        }
+    }
+
+    public static JsonPathExtractor of(String... paths) {
+        return new JsonPathExtractor(paths);
+    }
+
+    /** Extract all declared paths from a JSON document whose root must be an object. Never throws. */
+    public Result extract(String json) {
+        String[] values = new String[slots.size()];
+        byte[] kinds = new byte[slots.size()];
+        if (json == null || json.isBlank()) {
+            return new Result(slots, values, kinds, false);
+        }
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return new Result(slots, values, kinds, false);
+            }
+            read(p, root, values, kinds);
+            return new Result(slots, values, kinds, true);
+        } catch (IOException | RuntimeException e) {
+            return new Result(slots, new String[slots.size()], new byte[slots.size()], false);
+        }
+    }
+
+    private void read(JsonParser p, Node node, String[] values, byte[] kinds) throws IOException {
+        JsonToken t = p.currentToken();
+        if (node.slot >= 0) {
+            if (t == JsonToken.START_OBJECT) {
+                kinds[node.slot] = OBJECT;
+            } else if (t == JsonToken.START_ARRAY) {
+                kinds[node.slot] = ARRAY;
+            } else if (t != JsonToken.VALUE_NULL) {
+                kinds[node.slot] = SCALAR;
+                values[node.slot] = p.getText();
+            }
+        }
+
+        if (t == JsonToken.START_OBJECT) {
+            if (node.byName.isEmpty()) {
+                p.skipChildren();
+                return;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                Node child = node.byName.get(p.currentName());
+                p.nextToken();
+                if (child == null) {
+                    p.skipChildren();
+                } else {
+                    read(p, child, values, kinds);
+                }
+            }
+        } else if (t == JsonToken.START_ARRAY) {
+            if (node.byIndex.isEmpty()) {
+                p.skipChildren();
+                return;
+            }
+            int i = 0;
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                Node child = node.byIndex.get(i++);
+                if (child == null) {
+                    p.skipChildren();
+                } else {
+                    read(p, child, values, kinds);
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+        final Map<String, Node> byName = new HashMap<>();
+        final Map<Integer, Node> byIndex = new HashMap<>();
+        int slot = -1;
+    }
+
+    /** Values of the declared paths for one document. */
+    public static final class Result {
+        private final Map<String, Integer> slots;
+        private final String[] values;
+        private final byte[] kinds;
+        private final boolean valid;
+
+        private Result(Map<String, Integer> slots, String[] values, byte[] kinds, boolean valid) {
+            this.slots = slots;
+            this.values = values;
+            this.kinds = kinds;
+            this.valid = valid;
+        }
+
+        /** True when the input was a well-formed JSON object. */
+        public boolean valid() {
+            return valid;
+        }
+
+        /** Scalar value as text (numbers/booleans as written); null if absent, null or not a scalar. */
+        public String get(String path) {
+            return values[slot(path)];
+        }
+
+        public boolean isObject(String path) {
+            return kinds[slot(path)] == OBJECT;
+        }
+
+        private int slot(String path) {
+            Integer s = slots.get(path);
+            if (s == null) throw new IllegalArgumentException("Path not declared: " + path);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.welhire.welhire_subscription_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes work on one checkout order (webhooks, status polls, provisioning) while unrelated orders run in parallel.
+ * - In-process: striped ReentrantLocks keyed by orderId hash.
+ * - Multi-node (optional, billing.order-lock.db-advisory=true): PostgreSQL transaction-scoped advisory lock.
+ * Callers wrap the whole unit of work in withOrderLock(), which waits for the in-process lock before any
+ * transaction (and pooled connection) is taken. lockForTransaction() inside the transaction is then reentrant,
+ * adds the advisory lock, and keeps the lock until commit/rollback, so the next holder always sees committed state.
+ * Metrics are recorded when a MeterRegistry bean is present (Actuator / Micrometer on the classpath).
+ */
+@Slf4j
+@Component
+public class OrderLockService {
+
+    private final ReentrantLock[] stripes;
+    private final Duration timeout;
+    private final boolean dbAdvisory;
+
+    // null when no MeterRegistry is available
+    private final Counter acquired;
+    private final Counter contended;
+    private final Timer waitTimer;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public OrderLockService(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${billing.order-lock.stripes:256}") int stripes,
+            @Value("${billing.order-lock.timeout:PT10S}") Duration timeout,
+            @Value("${billing.order-lock.db-advisory:false}") boolean dbAdvisory) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1; // round up to a power of two
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) this.stripes[i] = new ReentrantLock();
+        this.timeout = timeout;
+        this.dbAdvisory = dbAdvisory;
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        this.acquired = registry == null ? null : registry.counter("billing.order_lock.acquired");
+        this.contended = registry == null ? null : registry.counter("billing.order_lock.contended");
+        this.waitTimer = registry == null ? null : registry.timer("billing.order_lock.wait");
+    }
+
+    /**
+     * Run {@code work} holding the order's in-process lock. Call this outside any transaction and start the
+     * transaction inside {@code work}, so waiting for a busy order never pins a pooled connection.
+     * @throws IllegalStateException if the lock cannot be acquired within billing.order-lock.timeout
+     */
+    public <T> T withOrderLock(String orderId, Supplier<T> work) {
+        if (!StringUtils.hasText(orderId)) return work.get();
+        ReentrantLock lock = stripeFor(orderId);
+        acquire(lock, orderId);
+        try {
+            return work.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lock the order for the rest of the current transaction. Must be called inside a transaction;
+     * immediate when the caller already holds withOrderLock() for this order.
+     * @throws IllegalStateException if the lock cannot be acquired within billing.order-lock.timeout
+     */
+    public void lockForTransaction(String orderId) {
+        if (!StringUtils.hasText(orderId)) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Order lock requires an active transaction");
+        }
+
+        ReentrantLock lock = stripeFor(orderId);
+        acquire(lock, orderId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+
+        if (dbAdvisory) {
+            em.createNativeQuery("SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext(:k))) l")
+                    .setParameter("k", orderId)
+                    .getSingleResult();
+        }
+    }
+
+    private void acquire(ReentrantLock lock, String orderId) {
+        if (acquired != null) acquired.increment();
+        if (lock.tryLock()) return;
+
+        if (contended != null) contended.increment();
+        long start = System.nanoTime();
+        try {
+            if (!lock.tryLock(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Timed out waiting for order lock: " + orderId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for order lock: " + orderId, e);
+        } finally {
+            if (waitTimer != null) waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.debug("Order lock for {} acquired after contention", orderId);
+    }
+
+    private ReentrantLock stripeFor(String orderId) {
+        int h = orderId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+}
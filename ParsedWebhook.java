@@ -0,0 +1,122 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.service.PaymentPayloadExtractor.PaymentExtract;
+import com.welhire.welhire_subscription_service.util.JsonPathExtractor;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * One webhook delivery, parsed once.
+ * The body is read in a single streaming pass and everything needed downstream
+ * (signature validation, correlation, state update, payment details, provisioning) is captured here.
+ */
+public record ParsedWebhook(
+        MultiValueMap<String, String> headers,
+        String rawBody,
+        boolean validJson,
+        boolean paymentPayload,      // Zoho "payment" shape
+        String provider,
+        String eventId,              // provider event / payment id (dedup)
+        String orderId,              // reference_id / orderId (hostedpage payloads)
+        String paymentHostedpageId,  // payment.invoices[0].hosted_page_id
+        String hostedpageId,         // observed id: payment payload first, then hostedpage shapes
+        String providerStatus,
+        String zohoSubscriptionId,
+        PaymentExtract payment) {
+
+    private static final String[] WEBHOOK_PATHS = {
+            "payment",
+            "payment.payment_id",
+            "event_id",
+            "payment.invoices[0].hosted_page_id",
+            "payment.invoices[0].subscription_ids[0]",
+            "payment.payment_status",
+            "payment.status",
+            "payment.autotransaction.payment_gateway",
+            "payment.payment_mode",
+            "data.hostedpage.hostedpage_id",
+            "data.hostedpage.id",
+            "hostedpage_id",
+            "hostedpage.id",
+            "data.hostedpage.status",
+            "hostedpage.status",
+            "status",
+            "data.hostedpage.reference_id",
+            "hostedpage.reference_id",
+            "orderId",
+            "data.order_id"
+    };
+
+    // Webhook correlators + payment detail fields, extracted in one pass
+    private static final JsonPathExtractor FIELDS = JsonPathExtractor.of(
+            Stream.concat(Arrays.stream(WEBHOOK_PATHS), Arrays.stream(PaymentPayloadExtractor.PATHS))
+                    .toArray(String[]::new));
+
+    public static ParsedWebhook parse(MultiValueMap<String, String> headers, String rawBody) {
+        JsonPathExtractor.Result root = FIELDS.extract(rawBody);
+        boolean payment = root.valid() && root.isObject("payment");
+
+        String paymentHostedpageId = payment ? root.get("payment.invoices[0].hosted_page_id") : null;
+
+        return new ParsedWebhook(
+                headers,
+                rawBody,
+                root.valid(),
+                payment,
+                detectProvider(headers, root, payment),
+                payment && StringUtils.hasText(root.get("payment.payment_id"))
+                        ? root.get("payment.payment_id") : root.get("event_id"),
+                extractOrderId(root),
+                paymentHostedpageId,
+                StringUtils.hasText(paymentHostedpageId) ? paymentHostedpageId : extractHostedpageId(root),
+                extractProviderStatus(root),
+                payment ? root.get("payment.invoices[0].subscription_ids[0]") : null,
+                PaymentPayloadExtractor.from(root));
+    }
+
+    public String header(String key) {
+        if (headers == null || key == null) return null;
+        var list = headers.get(key);
+        return (list == null || list.isEmpty()) ? null : list.get(0);
+    }
+
+    private static String detectProvider(MultiValueMap<String, String> headers, JsonPathExtractor.Result root, boolean payment) {
+        if (payment) {
+            String fromPayment = root.get("payment.autotransaction.payment_gateway"); // "test_gateway"
+            if (!StringUtils.hasText(fromPayment)) fromPayment = root.get("payment.payment_mode");
+            if (StringUtils.hasText(fromPayment)) return fromPayment;
+        }
+        var list = headers == null ? null : headers.get("X-Provider");
+        String fromHeader = (list == null || list.isEmpty()) ? null : list.get(0);
+        return StringUtils.hasText(fromHeader) ? fromHeader : "ZOHOBILLING";
+    }
+
+    private static String extractHostedpageId(JsonPathExtractor.Result root) {
+        String id = root.get("payment.invoices[0].hosted_page_id");
+        if (!StringUtils.hasText(id)) id = root.get("data.hostedpage.hostedpage_id");
+        if (!StringUtils.hasText(id)) id = root.get("data.hostedpage.id");
+        if (!StringUtils.hasText(id)) id = root.get("hostedpage_id");
+        if (!StringUtils.hasText(id)) id = root.get("hostedpage.id");
+        return id;
+    }
+
+    private static String extractProviderStatus(JsonPathExtractor.Result root) {
+        String s = root.get("payment.payment_status"); // "paid"
+        if (!StringUtils.hasText(s)) s = root.get("payment.status"); // often "success"
+        if (!StringUtils.hasText(s)) s = root.get("data.hostedpage.status");
+        if (!StringUtils.hasText(s)) s = root.get("hostedpage.status");
+        if (!StringUtils.hasText(s)) s = root.get("status");
+        return s;
+    }
+
+    private static String extractOrderId(JsonPathExtractor.Result root) {
+        String s = root.get("data.hostedpage.reference_id");
+        if (!StringUtils.hasText(s)) s = root.get("hostedpage.reference_id");
+        if (!StringUtils.hasText(s)) s = root.get("orderId");
+        if (!StringUtils.hasText(s)) s = root.get("data.order_id");
+        return s;
+    }
+}
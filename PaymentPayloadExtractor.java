@@ -0,0 +1,159 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.util.JsonPathExtractor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+
+/**
+ * Extracts invoice id, amount, currency, email, payment method and payment date
+ * from a provider payload (Zoho "payment" shape first, flat "data" shape as fallback).
+ * Used once at write time (webhook / status check) and by the backfill for legacy rows.
+ */
+@Slf4j
+@Component
+public class PaymentPayloadExtractor {
+
+    private static final String MERGE_DELIM = "\n\n---\n\n";
+
+    // Every path the extraction below may read (other extractors may include these to share one pass)
+    static final String[] PATHS = {
+            "payment",
+            "payment.date",
+            "payment.email",
+            "payment.payment_mode",
+            "payment.autotransaction.payment_gateway",
+            "payment.currency_code",
+            "payment.amount",
+            "payment.invoices[0].invoice_amount",
+            "payment.invoices[0].invoice_id",
+            "data.customer_email",
+            "data.payment_mode",
+            "data.currency",
+            "data.amount",
+            "data.invoice_id",
+            "data.date"
+    };
+
+    private static final JsonPathExtractor PAYMENT_FIELDS = JsonPathExtractor.of(PATHS);
+
+    /** Extract from a single provider payload. Never null; fields are null when absent. */
+    public PaymentExtract extract(String json) {
+        PaymentExtract out = new PaymentExtract();
+
+        if (!StringUtils.hasText(json)) {
+            return out;
+        }
+
+        JsonPathExtractor.Result root = PAYMENT_FIELDS.extract(json);
+        if (!root.valid()) {
+            log.debug("Could not parse provider payload: {}", shorten(json));
+            return out;
+        }
+        return from(root);
+    }
+
+    /** Extract from an already-parsed payload; the extractor must have declared all of PATHS. */
+    static PaymentExtract from(JsonPathExtractor.Result root) {
+        PaymentExtract out = new PaymentExtract();
+        if (!root.valid()) {
+            return out;
+        }
+
+        // Prefer Zoho "payment" shape
+        if (root.isObject("payment")) {
+            out.date = root.get("payment.date");
+            out.email = root.get("payment.email");
+
+            // payment method
+            String method = root.get("payment.payment_mode");
+            if (!StringUtils.hasText(method)) {
+                method = root.get("payment.autotransaction.payment_gateway");
+            }
+            out.paymentMethod = method;
+
+            // currency
+            out.currency = root.get("payment.currency_code");
+
+            // amount
+            out.amount = asBigDecimal(root.get("payment.amount"));
+            if (out.amount == null) {
+                out.amount = asBigDecimal(root.get("payment.invoices[0].invoice_amount"));
+            }
+
+            // invoice id
+            out.invoiceId = root.get("payment.invoices[0].invoice_id");
+            return out;
+        }
+
+        // Fallbacks (hostedpage or any other flat formats if ever present)
+        out.email = root.get("data.customer_email");
+        out.paymentMethod = root.get("data.payment_mode");
+        out.currency = root.get("data.currency");
+        out.amount = asBigDecimal(root.get("data.amount"));
+        out.invoiceId = root.get("data.invoice_id");
+        out.date = root.get("data.date");
+        return out;
+    }
+
+    /** Legacy response_payload_json: several payloads merged with a delimiter → use the last valid JSON block. */
+    public PaymentExtract extractFromMerged(String mergedJson) {
+        if (!StringUtils.hasText(mergedJson)) {
+            return new PaymentExtract();
+        }
+        return extract(lastParsableBlock(mergedJson));
+    }
+
+    private String lastParsableBlock(String merged) {
+        if (merged.contains(MERGE_DELIM)) {
+            String[] parts = merged.split(MERGE_DELIM);
+            for (int i = parts.length - 1; i >= 0; i--) {
+                String block = parts[i].trim();
+                if (block.isEmpty()) continue;
+                if (looksLikeJson(block)) return block;
+            }
+        }
+        return merged.trim();
+    }
+
+    private boolean looksLikeJson(String s) {
+        String t = s.trim();
+        return (t.startsWith("{") && t.endsWith("}")) || (t.startsWith("[") && t.endsWith("]"));
+    }
+
+    /* ==========================  Tiny helpers  ========================== */
+
+    private String shorten(String s) {
+        if (s == null) return "";
+        return s.length() > 600 ? s.substring(0, 600) + "...(truncated)" : s;
+    }
+
+    private static BigDecimal asBigDecimal(String s) {
+        if (s == null) return null;
+        try {
+            String t = s.trim();
+            return t.isEmpty() ? null : new BigDecimal(t);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // result holder
+    public static final class PaymentExtract {
+        String date;
+        String email;
+        String paymentMethod;
+        String currency;
+        BigDecimal amount;
+        String invoiceId;
+
+        public String getDate() { return date; }
+        public String getEmail() { return email; }
+        public String getPaymentMethod() { return paymentMethod; }
+        public String getCurrency() { return currency; }
+        public BigDecimal getAmount() { return amount; }
+        public String getInvoiceId() { return invoiceId; }
+    }
+}
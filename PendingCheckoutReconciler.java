@@ -0,0 +1,136 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutReconcileLeaseRepository;
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutReconcileLeaseRepository.ReconcileCandidate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves PENDING / CREATED hosted checkouts without waiting for a webhook or a client poll.
+ * Each run claims open rows older than min-age (soonest-expiring first) with FOR UPDATE SKIP LOCKED and a
+ * hosted_checkout_reconcile_lease until now + recheck-after, so nodes never check the same order twice in
+ * a window. The claimed orders are handed to the reconciler's own pool, spaced to rate-per-second, and
+ * refreshed through CheckoutService.refreshFromProvider (asking the provider even past expiry, so a payment
+ * whose webhook was lost is still found); the scheduler thread returns right after the claim.
+ * A new batch is claimed only once the previous one has drained.
+ * With this enabled, clients can poll the cheap checkPaymentStatusLocalOnly path.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PendingCheckoutReconciler {
+
+    private static final List<String> OPEN_STATUSES = List.of("PENDING", "CREATED");
+
+    private final HostedCheckoutReconcileLeaseRepository leaseRepo;
+    private final CheckoutService checkoutService;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${billing.reconciler.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.reconciler.min-age:PT2M}")
+    private Duration minAge;
+
+    // Rows past expiringTime + grace are left to HostedCheckoutExpirySweeper
+    @Value("${billing.expiry-sweep.grace:PT15M}")
+    private Duration expiryGrace;
+
+    @Value("${billing.reconciler.recheck-after:PT5M}")
+    private Duration recheckAfter;
+
+    @Value("${billing.reconciler.batch-size:100}")
+    private int batchSize;
+
+    @Value("${billing.reconciler.parallelism:4}")
+    private int parallelism;
+
+    @Value("${billing.reconciler.rate-per-second:5}")
+    private double ratePerSecond;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private ScheduledExecutorService pool;
+    private TransactionTemplate tx;
+
+    @PostConstruct
+    void start() {
+        tx = new TransactionTemplate(txManager);
+        if (enabled) {
+            pool = Executors.newScheduledThreadPool(Math.max(1, parallelism), r -> {
+                Thread t = new Thread(r, "checkout-reconciler");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${billing.reconciler.interval:PT1M}")
+    public void reconcile() {
+        if (!enabled || pool == null) return;
+        if (inFlight.get() > 0) {
+            log.debug("Previous reconcile batch still running ({} left); skipping", inFlight.get());
+            return;
+        }
+
+        List<ReconcileCandidate> rows = claim();
+        if (rows.isEmpty()) return;
+
+        // Pace submissions so provider QPS stays under rate-per-second whatever the parallelism
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.1, ratePerSecond));
+        inFlight.addAndGet(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            final String orderId = rows.get(i).getOrderId();
+            final String gateway = StringUtils.hasText(rows.get(i).getGateway()) ? rows.get(i).getGateway() : "ZOHOBILLING";
+            try {
+                pool.schedule(() -> refresh(orderId, gateway), i * intervalNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet(); // shutting down; the lease expires and another run picks it up
+            }
+        }
+        log.info("Claimed {} open hosted checkouts for reconciliation", rows.size());
+    }
+
+    private List<ReconcileCandidate> claim() {
+        return tx.execute(s -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            leaseRepo.deleteClosed(OPEN_STATUSES);
+            List<ReconcileCandidate> rows = leaseRepo.lockDueCandidates(
+                    OPEN_STATUSES, now.minus(minAge), now.minus(expiryGrace), now, batchSize);
+            OffsetDateTime nextCheckAt = now.plus(recheckAfter);
+            for (ReconcileCandidate c : rows) {
+                leaseRepo.lease(c.getOrderId(), nextCheckAt);
+            }
+            return rows;
+        });
+    }
+
+    private void refresh(String orderId, String gateway) {
+        try {
+            var res = checkoutService.refreshFromProvider(orderId, gateway, true);
+            log.debug("Reconciled orderId={} → {}", orderId, res.getStatus());
+        } catch (Exception e) {
+            log.warn("Reconcile failed for orderId={}: {}", orderId, e.getMessage());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.dto.PlanDtos;
+import com.welhire.welhire_subscription_service.entity.PlanPrice;
+import com.welhire.welhire_subscription_service.entity.SubscriptionMasterPlan;
+import com.welhire.welhire_subscription_service.repository.PlanCatalogVersionRepository;
+import com.welhire.welhire_subscription_service.repository.SubscriptionMasterPlanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read-through, in-process snapshot of the plan catalog (plans + features + prices).
+ * - Loaded in one query via findAllWithFeaturesAndPrices(), inside a short read-only transaction.
+ * - Holds immutable projections (CatalogPlan), never the loaded entities, so it is safe to share across threads.
+ * - Keyed by external plan code and by plan id.
+ * - Swapped atomically when the plan_catalog_version row changes (checked at most every version-check-interval,
+ *   so invalidate() on one node reaches all nodes) or the snapshot is older than the TTL.
+ * Cache hits never open a transaction or touch the connection pool.
+ */
+@Slf4j
+@Component
+public class PlanCatalogCache {
+
+    private final SubscriptionMasterPlanRepository planRepo;
+    private final PlanCatalogVersionRepository versionRepo;
+    private final ObjectProvider<PlanService> planService;
+    private final TransactionTemplate readTx;
+    private final TransactionTemplate writeTx;
+
+    // Safety net for catalog edits made outside this service (e.g. SQL console) without a version bump
+    private final long ttlMillis;
+    private final long versionCheckMillis;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    private volatile long versionCheckedAtMillis;
+    private volatile boolean stale;
+
+    /** Immutable view of the catalog at one version. */
+    public record Snapshot(
+            long version,
+            long loadedAtMillis,
+            Map<String, CatalogPlan> byCode,
+            Map<Long, CatalogPlan> byId) {}
+
+    /** Immutable plan projection; {@code view} is the precomputed PlanDtos.PlanView (treat as read-only). */
+    public record CatalogPlan(
+            Long id,
+            String externalPlanCode,
+            String category,
+            Boolean isActive,
+            String intervalUnit,
+            Integer trialPeriodDays,
+            Integer licenseLimit,
+            List<CatalogFeature> features,
+            List<CatalogPrice> prices,
+            PlanDtos.PlanView view) {}
+
+    public record CatalogFeature(String key, Integer limit) {}
+
+    public record CatalogPrice(String currency, BigDecimal amount) {}
+
+    public PlanCatalogCache(
+            SubscriptionMasterPlanRepository planRepo,
+            PlanCatalogVersionRepository versionRepo,
+            ObjectProvider<PlanService> planService,
+            PlatformTransactionManager txManager,
+            @Value("${billing.plan-catalog.ttl:PT5M}") Duration ttl,
+            @Value("${billing.plan-catalog.version-check-interval:PT10S}") Duration versionCheckInterval) {
+        this.planRepo = planRepo;
+        this.versionRepo = versionRepo;
+        this.planService = planService;
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.writeTx = new TransactionTemplate(txManager);
+        this.ttlMillis = ttl.toMillis();
+        this.versionCheckMillis = versionCheckInterval.toMillis();
+    }
+
+    /** Current snapshot; probes the catalog version at most every version-check-interval, reloads if it changed. */
+    public Snapshot current() {
+        Snapshot s = snapshot;
+        long now = System.currentTimeMillis();
+        if (isUsable(s, now) && now - versionCheckedAtMillis < versionCheckMillis) {
+            return s;
+        }
+        reloadLock.lock();
+        try {
+            s = snapshot;
+            now = System.currentTimeMillis();
+            if (isUsable(s, now)) {
+                if (now - versionCheckedAtMillis < versionCheckMillis) {
+                    return s;
+                }
+                Long v = probeVersion();
+                versionCheckedAtMillis = now;
+                if (v == null || v == s.version()) {
+                    return s;
+                }
+            }
+            stale = false; // an invalidate() during the load below marks the new snapshot stale again
+            Long v = probeVersion();
+            s = load(v == null ? 0L : v);
+            snapshot = s;
+            versionCheckedAtMillis = System.currentTimeMillis();
+            return s;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Bump the catalog version (joins the caller's transaction when there is one) and drop this node's snapshot;
+     * other nodes reload on their next version check. Plan write paths must call this.
+     */
+    public void invalidate() {
+        stale = true;
+        try {
+            writeTx.executeWithoutResult(st -> versionRepo.bump());
+        } catch (RuntimeException e) {
+            log.warn("Plan catalog version bump failed (other nodes will rely on TTL): {}", e.getMessage());
+        }
+        log.info("Plan catalog invalidated");
+    }
+
+    public Optional<CatalogPlan> findByCode(String externalPlanCode) {
+        if (!StringUtils.hasText(externalPlanCode)) return Optional.empty();
+        return Optional.ofNullable(current().byCode().get(externalPlanCode));
+    }
+
+    public Optional<CatalogPlan> findActiveByCode(String externalPlanCode) {
+        return findByCode(externalPlanCode).filter(p -> Boolean.TRUE.equals(p.isActive()));
+    }
+
+    public Optional<CatalogPlan> findById(Long planId) {
+        if (planId == null) return Optional.empty();
+        return Optional.ofNullable(current().byId().get(planId));
+    }
+
+    /** Price of a cached plan for the given currency (case-insensitive). */
+    public Optional<CatalogPrice> findPrice(CatalogPlan plan, String currency) {
+        if (plan == null || !StringUtils.hasText(currency)) return Optional.empty();
+        for (CatalogPrice price : plan.prices()) {
+            if (currency.equalsIgnoreCase(price.currency())) {
+                return Optional.of(price);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean isUsable(Snapshot s, long now) {
+        return s != null && !stale && now - s.loadedAtMillis() < ttlMillis;
+    }
+
+    private Long probeVersion() {
+        try {
+            return versionRepo.findCurrentVersion();
+        } catch (RuntimeException e) {
+            log.warn("Plan catalog version check failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Snapshot load(long v) {
+        List<CatalogPlan> plans = readTx.execute(st -> planRepo.findAllWithFeaturesAndPrices().stream()
+                .map(this::toCatalogPlan)
+                .toList());
+        Map<String, CatalogPlan> byCode = new HashMap<>(plans.size() * 2);
+        Map<Long, CatalogPlan> byId = new HashMap<>(plans.size() * 2);
+        for (CatalogPlan p : plans) {
+            if (StringUtils.hasText(p.externalPlanCode())) byCode.put(p.externalPlanCode(), p);
+            if (p.id() != null) byId.put(p.id(), p);
+        }
+        log.info("Plan catalog loaded: {} plans (version={})", plans.size(), v);
+        return new Snapshot(v, System.currentTimeMillis(), Map.copyOf(byCode), Map.copyOf(byId));
+    }
+
+    // Runs inside the load transaction: features/prices are initialized, the entity is not retained
+    private CatalogPlan toCatalogPlan(SubscriptionMasterPlan p) {
+        List<CatalogFeature> features = p.getFeatures() == null ? List.of()
+                : p.getFeatures().stream().map(f -> new CatalogFeature(f.getKey(), f.getLimit())).toList();
+        List<CatalogPrice> prices = new ArrayList<>();
+        if (p.getPrices() != null) {
+            for (PlanPrice price : p.getPrices()) {
+                prices.add(new CatalogPrice(price.getCurrency(), price.getAmount()));
+            }
+        }
+        return new CatalogPlan(
+                p.getId(),
+                p.getExternalPlanCode(),
+                p.getCategory(),
+                p.getIsActive(),
+                p.getIntervalUnit(),
+                p.getTrialPeriodDays(),
+                p.getLicenseLimit(),
+                features,
+                List.copyOf(prices),
+                planService.getObject().toDto(p));
+    }
+}
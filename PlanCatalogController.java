@@ -0,0 +1,25 @@
+package com.welhire.welhire_subscription_service.controller;
+
+import com.welhire.welhire_subscription_service.service.PlanCatalogCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Plan catalog cache maintenance:
+ *  - POST /api/v1/billing/plan-catalog/invalidate  -> bump the catalog version; every node reloads its snapshot
+ * Use after editing plans, features or prices outside the plan write APIs (e.g. SQL console).
+ */
+@RestController
+@RequestMapping("/api/v1/billing/plan-catalog")
+@RequiredArgsConstructor
+public class PlanCatalogController {
+
+    private final PlanCatalogCache planCatalog;
+
+    @PostMapping("/invalidate")
+    public ResponseEntity<Void> invalidate() {
+        planCatalog.invalidate();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,22 @@
+package com.welhire.welhire_subscription_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Single-row catalog version (id = 1). Bumped by PlanCatalogCache.invalidate(); every node compares it
+ * with its snapshot version and reloads the plan catalog when it changed.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+@Entity
+@Table(name = "plan_catalog_version")
+public class PlanCatalogVersion {
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private Short id;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+}
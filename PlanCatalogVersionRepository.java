@@ -0,0 +1,27 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.PlanCatalogVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PlanCatalogVersionRepository extends JpaRepository<PlanCatalogVersion, Short> {
+
+    /**
+     * Current catalog version; null until the first bump.
+     */
+    @Query(value = "SELECT version FROM plan_catalog_version WHERE id = 1", nativeQuery = true)
+    Long findCurrentVersion();
+
+    /**
+     * Increment the catalog version (creates the row on first use). Joins the caller's transaction,
+     * so a bump made with a plan write becomes visible together with it.
+     */
+    @Modifying
+    @Query(value = """
+                INSERT INTO plan_catalog_version (id, version)
+                VALUES (1, 1)
+                ON CONFLICT (id) DO UPDATE SET version = plan_catalog_version.version + 1
+            """, nativeQuery = true)
+    int bump();
+}
@@ -0,0 +1,37 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.dto.PlanDtos;
+import com.welhire.welhire_subscription_service.entity.SubscriptionMasterPlan;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * PlanDtos.PlanView per plan (features already sorted, prices mapped), precomputed when PlanCatalogCache
+ * loads a snapshot, so status polling no longer pays for entity traversal and sorting on every request.
+ * Views are shared across requests: treat them as read-only.
+ */
+@Component
+@RequiredArgsConstructor
+public class PlanViewCache {
+
+    private final PlanCatalogCache planCatalog;
+    private final PlanService planService;
+
+    /** View for a plan id, or empty when the plan is not in the catalog. */
+    public Optional<PlanDtos.PlanView> get(Long planId) {
+        return planCatalog.findById(planId).map(PlanCatalogCache.CatalogPlan::view);
+    }
+
+    /** View for a catalog plan. */
+    public PlanDtos.PlanView get(PlanCatalogCache.CatalogPlan plan) {
+        return plan == null ? null : plan.view();
+    }
+
+    /** View for a plan entity (e.g. a subscription's plan); mapped on the fly if the plan is not cached. */
+    public PlanDtos.PlanView get(SubscriptionMasterPlan plan) {
+        if (plan == null) return null;
+        return get(plan.getId()).orElseGet(() -> planService.toDto(plan));
+    }
+}
@@ -0,0 +1,45 @@
+package com.welhire.welhire_subscription_service.entity;
+
+import com.welhire.welhire_subscription_service.converter.CompressedPayloadConverter;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One provider payload (hosted page response, status check response or webhook body) for a checkout order.
+ * Append-only; replaces concatenating payloads into HostedCheckout.responsePayloadJson.
+ * Arrival order per order is the identity id (no per-order sequence to allocate, so concurrent appends never collide).
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+@Entity
+@Table(
+    name = "provider_payload_event",
+    indexes = {
+        @Index(name = "idx_payload_event_order_id", columnList = "order_id, id"),
+        @Index(name = "idx_payload_event_received_at", columnList = "received_at")
+    }
+)
+public class ProviderPayloadEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false, length = 64)
+    private String orderId;
+
+    // HOSTED_PAGE | STATUS_CHECK | WEBHOOK
+    @Column(name = "source", nullable = false, length = 32)
+    private String source;
+
+    @Column(name = "received_at", nullable = false)
+    private OffsetDateTime receivedAt;
+
+    // Large payloads are stored deflate-compressed (see CompressedPayloadConverter)
+    @Convert(converter = CompressedPayloadConverter.class)
+    @Column(name = "payload", columnDefinition = "text")
+    private String payload;
+}
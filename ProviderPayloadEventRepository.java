@@ -0,0 +1,81 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.ProviderPayloadEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProviderPayloadEventRepository extends JpaRepository<ProviderPayloadEvent, Long> {
+
+    Optional<ProviderPayloadEvent> findFirstByOrderIdOrderByIdDesc(String orderId);
+
+    List<ProviderPayloadEvent> findByOrderIdOrderByIdAsc(String orderId);
+
+    /**
+     * Latest event per order among the given sources, for a batch of orders (served by the (order_id, id) index).
+     */
+    @Query("""
+                SELECT e
+                FROM ProviderPayloadEvent e
+                WHERE e.orderId IN :orderIds
+                  AND e.id = (SELECT MAX(e2.id)
+                              FROM ProviderPayloadEvent e2
+                              WHERE e2.orderId = e.orderId AND e2.source IN :sources)
+            """)
+    List<ProviderPayloadEvent> findLatestByOrderIdInAndSourceIn(@Param("orderIds") Collection<String> orderIds,
+                                                                @Param("sources") Collection<String> sources);
+
+    /**
+     * Retention: delete up to :limit events received before :cutoff, never the latest event of an order.
+     */
+    @Modifying
+    @Query(value = """
+                DELETE FROM provider_payload_event
+                WHERE id IN (
+                    SELECT e.id
+                    FROM provider_payload_event e
+                    WHERE e.received_at < :cutoff
+                      AND EXISTS (SELECT 1 FROM provider_payload_event n
+                                  WHERE n.order_id = e.order_id AND n.id > e.id)
+                    ORDER BY e.id
+                    LIMIT :limit
+                )
+            """, nativeQuery = true)
+    int deleteOlderThan(@Param("cutoff") OffsetDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * Up to :limit orders holding more than :maxPerOrder events (one aggregate over the (order_id, id) index).
+     */
+    @Query(value = """
+                SELECT order_id
+                FROM provider_payload_event
+                GROUP BY order_id
+                HAVING COUNT(*) > :maxPerOrder
+                LIMIT :limit
+            """, nativeQuery = true)
+    List<String> findOrdersAbove(@Param("maxPerOrder") int maxPerOrder, @Param("limit") int limit);
+
+    /**
+     * Per-order cap for the given orders: delete all but their newest :maxPerOrder events.
+     */
+    @Modifying
+    @Query(value = """
+                DELETE FROM provider_payload_event
+                WHERE id IN (
+                    SELECT r.id
+                    FROM (
+                        SELECT e.id, row_number() OVER (PARTITION BY e.order_id ORDER BY e.id DESC) AS rn
+                        FROM provider_payload_event e
+                        WHERE e.order_id IN (:orderIds)
+                    ) r
+                    WHERE r.rn > :maxPerOrder
+                )
+            """, nativeQuery = true)
+    int trimOrders(@Param("orderIds") Collection<String> orderIds, @Param("maxPerOrder") int maxPerOrder);
+}
@@ -0,0 +1,81 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.repository.ProviderPayloadEventRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Keeps provider_payload_event bounded, in set-based batches (one DELETE per batch, one short transaction each):
+ * - events older than retention are dropped, except the latest event of each order;
+ * - orders are capped at max-per-order events (newest kept), e.g. against webhook retry storms; the over-limit
+ *   orders are found once per run, then trimmed a chunk of orders per transaction.
+ * Deletes payment audit payloads, so it is opt-in (billing.payload-events.retention.enabled).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderPayloadEventRetention {
+
+    private final ProviderPayloadEventRepository eventRepo;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${billing.payload-events.retention.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.payload-events.retention.max-age:P90D}")
+    private Duration maxAge;
+
+    @Value("${billing.payload-events.retention.max-per-order:50}")
+    private int maxPerOrder;
+
+    @Value("${billing.payload-events.retention.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${billing.payload-events.retention.max-batches:20}")
+    private int maxBatches;
+
+    private TransactionTemplate tx;
+
+    @PostConstruct
+    void start() {
+        tx = new TransactionTemplate(txManager);
+    }
+
+    @Scheduled(fixedDelayString = "${billing.payload-events.retention.interval:PT1H}")
+    public void purge() {
+        if (!enabled) return;
+
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(maxAge);
+        int aged = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            Integer n = tx.execute(s -> eventRepo.deleteOlderThan(cutoff, batchSize));
+            aged += n == null ? 0 : n;
+            if (n == null || n < batchSize) break;
+        }
+
+        // Over-limit orders once per run; each transaction trims batch-size / max-per-order of them
+        int chunk = Math.max(1, batchSize / Math.max(1, maxPerOrder));
+        List<String> over = eventRepo.findOrdersAbove(maxPerOrder, chunk * maxBatches);
+        int trimmed = 0;
+        for (int from = 0; from < over.size(); from += chunk) {
+            List<String> orderIds = over.subList(from, Math.min(from + chunk, over.size()));
+            Integer n = tx.execute(s -> eventRepo.trimOrders(orderIds, maxPerOrder));
+            trimmed += n == null ? 0 : n;
+        }
+
+        if (aged > 0 || trimmed > 0) {
+            log.info("Purged provider payload events: {} older than {}, {} above {} per order",
+                    aged, maxAge, trimmed, maxPerOrder);
+        }
+    }
+}
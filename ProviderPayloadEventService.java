@@ -0,0 +1,65 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.entity.ProviderPayloadEvent;
+import com.welhire.welhire_subscription_service.repository.ProviderPayloadEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Append-only store of provider payloads per checkout order (provider_payload_event).
+ * Each payload is one row; nothing is rewritten on retries. Bounded by ProviderPayloadEventRetention.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProviderPayloadEventService {
+
+    public static final String SOURCE_HOSTED_PAGE = "HOSTED_PAGE";
+    public static final String SOURCE_STATUS_CHECK = "STATUS_CHECK";
+    public static final String SOURCE_WEBHOOK = "WEBHOOK";
+
+    /** Sources whose payloads carry payment details (the hosted page response does not). */
+    public static final Set<String> PAYMENT_SOURCES = Set.of(SOURCE_STATUS_CHECK, SOURCE_WEBHOOK);
+
+    private final ProviderPayloadEventRepository eventRepo;
+
+    // Same bound the legacy merged response_payload_json had
+    @Value("${billing.payload-events.max-payload-chars:200000}")
+    private int maxPayloadChars;
+
+    @Transactional
+    public ProviderPayloadEvent append(String orderId, String source, String payload) {
+        if (!StringUtils.hasText(orderId) || !StringUtils.hasText(payload)) return null;
+        if (payload.length() > maxPayloadChars) {
+            log.warn("Provider payload for orderId={} source={} truncated from {} to {} chars",
+                    orderId, source, payload.length(), maxPayloadChars);
+            payload = payload.substring(0, maxPayloadChars);
+        }
+
+        ProviderPayloadEvent e = ProviderPayloadEvent.builder()
+                .orderId(orderId)
+                .source(source)
+                .receivedAt(OffsetDateTime.now())
+                .payload(payload)
+                .build();
+        return eventRepo.save(e);
+    }
+
+    /** Latest payload from one of the given sources per order, for a page of orders in one query, keyed by orderId. */
+    @Transactional(readOnly = true)
+    public Map<String, ProviderPayloadEvent> findLatest(Collection<String> orderIds, Collection<String> sources) {
+        if (orderIds == null || orderIds.isEmpty()) return Map.of();
+        Map<String, ProviderPayloadEvent> out = new HashMap<>(orderIds.size() * 2);
+        for (ProviderPayloadEvent e : eventRepo.findLatestByOrderIdInAndSourceIn(orderIds, sources)) {
+            out.put(e.getOrderId(), e);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,157 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.entity.HostedCheckout;
+import com.welhire.welhire_subscription_service.entity.ProvisioningTask;
+import com.welhire.welhire_subscription_service.repository.HostedCheckoutRepository;
+import com.welhire.welhire_subscription_service.repository.ProvisioningTaskRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains provisioning_task (billing.provisioning.outbox.enabled=true).
+ * Each poll claims at most as many tasks as there are idle workers, hands them to a fixed-size pool and
+ * returns without waiting, so the shared scheduler thread is never blocked.
+ * Each task runs SubscriptionProvisioningService.activateFromSuccessfulCheckout in one transaction
+ * under the order lock. Failures retry with exponential backoff (base-delay * 2^(attempts-1), capped
+ * at max-delay) and end in DEAD after max-attempts.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProvisioningOutboxWorker {
+
+    private final ProvisioningTaskRepository taskRepo;
+    private final HostedCheckoutRepository hostedRepo;
+    private final SubscriptionProvisioningService provisioningService;
+    private final OrderLockService orderLocks;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${billing.provisioning.outbox.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.provisioning.outbox.workers:4}")
+    private int workers;
+
+    @Value("${billing.provisioning.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${billing.provisioning.outbox.base-delay:PT10S}")
+    private Duration baseDelay;
+
+    @Value("${billing.provisioning.outbox.max-delay:PT30M}")
+    private Duration maxDelay;
+
+    @Value("${billing.provisioning.outbox.stale-after:PT5M}")
+    private Duration staleAfter;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private ExecutorService pool;
+    private TransactionTemplate tx;
+
+    @PostConstruct
+    void start() {
+        tx = new TransactionTemplate(txManager);
+        if (enabled) {
+            pool = Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+                Thread t = new Thread(r, "provisioning-outbox-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pool != null) pool.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${billing.provisioning.outbox.poll-interval:PT2S}")
+    public void poll() {
+        if (!enabled || pool == null) return;
+
+        int idle = Math.max(1, workers) - inFlight.get();
+        if (idle <= 0) return;
+
+        List<ProvisioningTask> batch = claim(idle);
+        for (ProvisioningTask task : batch) {
+            inFlight.incrementAndGet();
+            try {
+                pool.execute(() -> {
+                    try {
+                        execute(task);
+                    } catch (RuntimeException e) {
+                        log.error("Provisioning task crashed", e); // reclaimed once stale
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet(); // shutting down; the task is reclaimed once stale
+            }
+        }
+    }
+
+    private List<ProvisioningTask> claim(int limit) {
+        return tx.execute(status -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            List<ProvisioningTask> rows = taskRepo.lockDueBatch(now, now.minus(staleAfter), limit);
+            for (ProvisioningTask t : rows) {
+                t.setStatus("RUNNING");
+                t.setClaimedAt(now);
+                t.setAttempts(t.getAttempts() + 1);
+            }
+            return taskRepo.saveAll(rows);
+        });
+    }
+
+    private void execute(ProvisioningTask task) {
+        try {
+            orderLocks.withOrderLock(task.getOrderId(), () -> tx.execute(s -> {
+                orderLocks.lockForTransaction(task.getOrderId());
+                HostedCheckout hc = hostedRepo.findByOrderId(task.getOrderId())
+                        .orElseThrow(() -> new IllegalStateException("HostedCheckout not found: " + task.getOrderId()));
+                // No-op when the order is already provisioned (insert-first on activation_order_id);
+                // any other failure rolls back and retries
+                provisioningService.activateFromSuccessfulCheckout(hc);
+                return null;
+            }));
+            finish(task.getId(), "DONE", null, null);
+        } catch (Exception e) {
+            boolean dead = task.getAttempts() >= maxAttempts;
+            OffsetDateTime retryAt = dead ? null : OffsetDateTime.now().plus(backoff(task.getAttempts()));
+            log.error("Provisioning task orderId={} attempt {}/{} failed{}: {}",
+                    task.getOrderId(), task.getAttempts(), maxAttempts,
+                    dead ? " → DEAD" : " → retry at " + retryAt, e.getMessage(), e);
+            finish(task.getId(), dead ? "DEAD" : "PENDING", retryAt, e.getMessage());
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        long factor = 1L << Math.min(Math.max(attempts - 1, 0), 20);
+        Duration d = baseDelay.multipliedBy(factor);
+        return d.compareTo(maxDelay) > 0 ? maxDelay : d;
+    }
+
+    private void finish(Long id, String status, OffsetDateTime nextAttemptAt, String error) {
+        tx.executeWithoutResult(s -> taskRepo.findById(id).ifPresent(t -> {
+            t.setStatus(status);
+            if (nextAttemptAt != null) t.setNextAttemptAt(nextAttemptAt);
+            if ("DONE".equals(status)) t.setCompletedAt(OffsetDateTime.now());
+            t.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), 2000)));
+            taskRepo.save(t);
+        }));
+    }
+}
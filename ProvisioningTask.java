@@ -0,0 +1,52 @@
+package com.welhire.welhire_subscription_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Outbox entry: "provision the subscription for this COMPLETED checkout".
+ * Written in the same transaction that completes the HostedCheckout; executed by ProvisioningOutboxWorker.
+ * PENDING → RUNNING → DONE, or back to PENDING with backoff, or DEAD after max attempts.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+@Entity
+@Table(
+    name = "provisioning_task",
+    uniqueConstraints = @UniqueConstraint(name = "uk_provisioning_task_order", columnNames = "order_id"),
+    indexes = @Index(name = "idx_provisioning_task_due", columnList = "status, next_attempt_at")
+)
+public class ProvisioningTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false, length = 64)
+    private String orderId;
+
+    // PENDING | RUNNING | DONE | DEAD
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "claimed_at")
+    private OffsetDateTime claimedAt;
+
+    @Column(name = "completed_at")
+    private OffsetDateTime completedAt;
+
+    @Column(name = "last_error", length = 2000)
+    private String lastError;
+}
@@ -0,0 +1,40 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.ProvisioningTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface ProvisioningTaskRepository extends JpaRepository<ProvisioningTask, Long> {
+
+    /**
+     * Enqueue once per order; repeated webhooks / polls for the same order are no-ops.
+     */
+    @Modifying
+    @Query(value = """
+                INSERT INTO provisioning_task (order_id, status, attempts, next_attempt_at, created_at)
+                VALUES (:orderId, 'PENDING', 0, now(), now())
+                ON CONFLICT (order_id) DO NOTHING
+            """, nativeQuery = true)
+    int enqueue(@Param("orderId") String orderId);
+
+    /**
+     * Lock the next due tasks (skipping rows locked by other nodes). Stale RUNNING rows (crashed worker) are reclaimed.
+     */
+    @Query(value = """
+                SELECT t.*
+                FROM provisioning_task t
+                WHERE (t.status = 'PENDING' AND t.next_attempt_at <= :now)
+                   OR (t.status = 'RUNNING' AND t.claimed_at < :staleBefore)
+                ORDER BY t.next_attempt_at, t.id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<ProvisioningTask> lockDueBatch(@Param("now") OffsetDateTime now,
+                                        @Param("staleBefore") OffsetDateTime staleBefore,
+                                        @Param("limit") int limit);
+}
@@ -0,0 +1,50 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.BillingEntitySubscription;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Insert-first activation: writes a new subscription unless one already exists for its activationOrderId,
+ * as one mapped HQL insert with ON CONFLICT (activationOrderId) DO NOTHING. The unique index on
+ * activation_order_id decides; the conflict is resolved by the database inside the caller's transaction
+ * (no exception, no rollback-only), and any other constraint failure still raises.
+ * Runs in the caller's transaction. The row is not loaded into the persistence context (no entity listeners run).
+ */
+@Repository
+public class SubscriptionActivationRepository {
+
+    private static final String INSERT_HQL = """
+            insert into BillingEntitySubscription (
+                billingEntity, plan, status, isZohoLinked, isPaidPlan, startDate, purchaseDate, endDate,
+                trialEndDate, autoRenew, currency, amount, zohoSubscriptionId, activationOrderId)
+            values (
+                :billingEntity, :plan, :status, :isZohoLinked, :isPaidPlan, :startDate, :purchaseDate, :endDate,
+                :trialEndDate, :autoRenew, :currency, :amount, :zohoSubscriptionId, :activationOrderId)
+            on conflict (activationOrderId) do nothing
+            """;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /** @return true when the subscription was inserted, false when its activationOrderId already has one. */
+    public boolean insertIfAbsent(BillingEntitySubscription sub) {
+        return em.createQuery(INSERT_HQL)
+                .setParameter("billingEntity", sub.getBillingEntity())
+                .setParameter("plan", sub.getPlan())
+                .setParameter("status", sub.getStatus())
+                .setParameter("isZohoLinked", sub.getIsZohoLinked())
+                .setParameter("isPaidPlan", sub.getIsPaidPlan())
+                .setParameter("startDate", sub.getStartDate())
+                .setParameter("purchaseDate", sub.getPurchaseDate())
+                .setParameter("endDate", sub.getEndDate())
+                .setParameter("trialEndDate", sub.getTrialEndDate())
+                .setParameter("autoRenew", sub.getAutoRenew())
+                .setParameter("currency", sub.getCurrency())
+                .setParameter("amount", sub.getAmount())
+                .setParameter("zohoSubscriptionId", sub.getZohoSubscriptionId())
+                .setParameter("activationOrderId", sub.getActivationOrderId())
+                .executeUpdate() == 1;
+    }
+}
@@ -1,9 +1,9 @@
 package com.welhire.welhire_subscription_service.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.welhire.welhire_subscription_service.entity.*;
 import com.welhire.welhire_subscription_service.enums.SubscriptionStatus;
 import com.welhire.welhire_subscription_service.repository.*;
+import com.welhire.welhire_subscription_service.util.JsonCodec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -17,7 +17,9 @@ import java.util.*;
 
 /**
  * Creates a PAID subscription after a successful checkout (COMPLETED).
- * Idempotent via activationOrderId on BillingEntitySubscription.
+ * Idempotent per order, insert-first: the subscription is inserted with ON CONFLICT (activation_order_id)
+ * DO NOTHING, so the unique index decides (no pre-read, safe for concurrent webhooks / polls without locks) and a
+ * repeated activation changes nothing.
  * Also enriches BillingEntity from hosted page payload and marks profile complete when sufficient.
  */
 @Slf4j
@@ -27,10 +29,11 @@ public class SubscriptionProvisioningService {
 
     private final BillingEntityRepository billingRepo;
     private final SubscriptionMasterPlanRepository planRepo;
-    private final PlanPriceRepository planPriceRepo;
+    private final PlanCatalogCache planCatalog;
     private final BillingEntitySubscriptionRepository subRepo;
-    private final FeatureUsageRepository featureUsageRepo;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SubscriptionActivationRepository activationRepo;
+    private final FeatureUsageBatchRepository featureUsageBatchRepo;
+    private final JsonCodec json;
 
     /**
      * Idempotently activate a PAID subscription from a successful checkout.
@@ -39,6 +42,8 @@ public class SubscriptionProvisioningService {
      * - Uses plan.intervalUnit for endDate.
      * - Initializes FeatureUsage from plan features.
      * - Enriches BillingEntity from HostedCheckout.requestPayloadJson and stored pricebookId.
+     * Joins the caller's transaction, so the subscription commits together with the COMPLETED transition and
+     * no second pooled connection is taken. A repeated activation for the same order is a no-op.
      */
     @Transactional
     public void activateFromSuccessfulCheckout(HostedCheckout hc) {
@@ -58,56 +63,43 @@ public class SubscriptionProvisioningService {
         final String planCode = hc.getPlanCode();
         final String currency = hc.getCurrency();
 
-        // Idempotency (webhook retries)
-        if (StringUtils.hasText(orderId) && subRepo.findByActivationOrderId(orderId).isPresent()) {
-            log.info("Provisioning already done for orderId={}", orderId);
-            // still attempt BE enrichment (harmless) if something was missing earlier
-            tryEnrichBillingEntity(hc);
-            return;
-        }
-
-        // Resolve references
+        // Resolve references (BillingEntity is loaded once; enrichment and the new subscription
+        // work on this managed instance and are flushed together at commit)
         BillingEntity be = billingRepo.findByBillingIdAndTenantId(billingId, tenantId)
                 .orElseThrow(() -> new IllegalStateException(
                         "BillingEntity not found for tenant=" + tenantId + ", billingId=" + billingId));
 
-        SubscriptionMasterPlan plan = planRepo.findByExternalPlanCode(planCode)
+        // Plan (with features + prices) from the catalog snapshot
+        PlanCatalogCache.CatalogPlan plan = planCatalog.findByCode(planCode)
                 .orElseThrow(() -> new IllegalStateException("Plan not found: " + planCode));
+        // Cached projections are not entities; associations link by id
+        SubscriptionMasterPlan planRef = planRepo.getReferenceById(plan.id());
 
         // Get amount from PlanPrice for this plan/currency
-        BigDecimal amount = planPriceRepo.findByPlanIdAndCurrency(plan.getId(), currency)
-                .map(PlanPrice::getAmount)
+        BigDecimal amount = planCatalog.findPrice(plan, currency)
+                .map(PlanCatalogCache.CatalogPrice::amount)
                 .orElseThrow(() -> new IllegalStateException(
                         "Plan price not found for plan=" + planCode + ", currency=" + currency));
 
-        // Enrich BillingEntity (best-effort; harmless if already present)
-        be = tryEnrichBillingEntity(hc);
-
-        // Close SAME-PLAN ACTIVE sub (single-active-per-planCode)
-        subRepo.findActiveForSamePlan(be, plan).ifPresent(existing -> {
-            existing.setStatus(SubscriptionStatus.CANCELLED);
-            existing.setEndDate(OffsetDateTime.now());
-            subRepo.save(existing);
-            log.info("Closed ACTIVE subscription id={} (same planCode={}) for tenant={} billingId={}",
-                    existing.getSubscriptionId(), planCode, tenantId, billingId);
-        });
+        // SAME-PLAN ACTIVE sub to close once this activation wins (read before the new ACTIVE row exists)
+        Optional<BillingEntitySubscription> samePlanActive = subRepo.findActiveForSamePlan(be, planRef);
 
         // Dates
         OffsetDateTime now = OffsetDateTime.now().truncatedTo(ChronoUnit.SECONDS);
         OffsetDateTime start = now;
-        OffsetDateTime end = computeEndDateFromInterval(start, plan.getIntervalUnit());
+        OffsetDateTime end = computeEndDateFromInterval(start, plan.intervalUnit());
         OffsetDateTime trialEnd = null;
-        if (plan.getTrialPeriodDays() != null && plan.getTrialPeriodDays() > 0) {
-            trialEnd = start.plusDays(plan.getTrialPeriodDays());
+        if (plan.trialPeriodDays() != null && plan.trialPeriodDays() > 0) {
+            trialEnd = start.plusDays(plan.trialPeriodDays());
         }
 
         // Seats (if you later add quantity-by-checkout, set here)
-        Integer licenseLimit = plan.getLicenseLimit();
+        Integer licenseLimit = plan.licenseLimit();
 
         // Create ACTIVE paid subscription
         BillingEntitySubscription sub = BillingEntitySubscription.builder()
                 .billingEntity(be)
-                .plan(plan)
+                .plan(planRef)
                 .status(SubscriptionStatus.ACTIVE)
                 .isZohoLinked(Boolean.TRUE)               // since checkout succeeded via Zoho
                 .isPaidPlan(Boolean.TRUE)
@@ -123,9 +115,28 @@ public class SubscriptionProvisioningService {
                 .activationOrderId(orderId)
                 .build();
 
-        BillingEntitySubscription saved = subRepo.saveAndFlush(sub);
+        // Idempotency: insert first; the unique activation_order_id index turns a repeat into a no-op
+        if (!activationRepo.insertIfAbsent(sub)) {
+            log.info("Provisioning already done for orderId={}", orderId);
+            return;
+        }
+        BillingEntitySubscription saved = subRepo.findByActivationOrderId(orderId)
+                .orElseThrow(() -> new IllegalStateException("Inserted subscription not found for orderId=" + orderId));
+
+        // Close SAME-PLAN ACTIVE sub (single-active-per-planCode)
+        samePlanActive.ifPresent(existing -> {
+            existing.setStatus(SubscriptionStatus.CANCELLED);
+            existing.setEndDate(OffsetDateTime.now());
+            subRepo.save(existing);
+            log.info("Closed ACTIVE subscription id={} (same planCode={}) for tenant={} billingId={}",
+                    existing.getSubscriptionId(), planCode, tenantId, billingId);
+        });
+
+        // Enrich BillingEntity in memory (best-effort; harmless if already present)
+        enrichBillingEntity(be, hc);
+
         log.info("Provisioned ACTIVE subscription id={} plan={} intervalUnit={} amount={} {} for tenant={} billingId={}",
-                saved.getSubscriptionId(), planCode, normalizeIntervalUnit(plan.getIntervalUnit()),
+                saved.getSubscriptionId(), planCode, normalizeIntervalUnit(plan.intervalUnit()),
                 amount, currency, tenantId, billingId);
 
         // Initialize FeatureUsage from plan features
@@ -135,19 +146,17 @@ public class SubscriptionProvisioningService {
     /* --------------------------- BillingEntity enrichment --------------------------- */
 
     /**
-     * Best-effort enrichment of BillingEntity using:
+     * Best-effort, in-memory enrichment of a managed BillingEntity using:
      * - HostedCheckout.pricebookId
      * - HostedCheckout.requestPayloadJson → customer, billing_address, GST, PoS
      * Sets hasCompleteBillingProfile=true when enough fields are present.
+     * No save/flush: changes are written by dirty checking when the provisioning transaction commits.
      */
-    @Transactional
-    protected BillingEntity tryEnrichBillingEntity(HostedCheckout hc) {
-        if (hc == null) return null;
+    private void enrichBillingEntity(BillingEntity be, HostedCheckout hc) {
+        if (be == null || hc == null) return;
 
         final String tenantId = hc.getTenantId();
         final String billingId = hc.getBillingId();
-        BillingEntity be = billingRepo.findByBillingIdAndTenantId(billingId, tenantId).orElse(null);
-        if (be == null) return null;
 
         boolean changed = false;
 
@@ -243,34 +252,26 @@ public class SubscriptionProvisioningService {
         }
 
         if (changed) {
-            be = billingRepo.saveAndFlush(be);
             log.info("BillingEntity enriched for tenant={} billingId={}: name={}, email={}, mobile={}, addr={}, stateCode={}, gst={}",
                     tenantId, billingId, be.getName(), be.getEmail(), be.getMobile(),
                     be.getBillingAddress(), be.getStateCode(), be.getGstNumber());
         }
-        return be;
     }
 
     /* --------------------------- Feature usage init --------------------------- */
 
-    private void initializeFeatureUsageFromPlan(BillingEntitySubscription sub, SubscriptionMasterPlan plan) {
-        if (plan.getFeatures() == null || plan.getFeatures().isEmpty()) {
-            log.warn("Plan {} has no configured features; skipping FeatureUsage init", plan.getExternalPlanCode());
+    private void initializeFeatureUsageFromPlan(BillingEntitySubscription sub, PlanCatalogCache.CatalogPlan plan) {
+        if (plan.features().isEmpty()) {
+            log.warn("Plan {} has no configured features; skipping FeatureUsage init", plan.externalPlanCode());
             return;
         }
-        plan.getFeatures().forEach(feat -> {
-            FeatureUsage fu = FeatureUsage.builder()
-                    .subscription(sub)
-                    .featureKey(feat.getKey())
-                    .limitCount(feat.getLimit())
-                    .usedCount(0)
-                    .isExhausted(false)
-                    .build();
-            featureUsageRepo.save(fu);
-        });
-        featureUsageRepo.flush();
+        // One multi-row insert for all features (IDENTITY ids would force one INSERT round-trip per entity)
+        List<FeatureUsageBatchRepository.NewFeatureUsage> rows = new ArrayList<>(plan.features().size());
+        plan.features().forEach(feat ->
+                rows.add(new FeatureUsageBatchRepository.NewFeatureUsage(feat.key(), feat.limit())));
+        featureUsageBatchRepo.insertInitial(sub, rows);
         log.info("Initialized {} feature usage rows for subscription id={}",
-                plan.getFeatures().size(), sub.getSubscriptionId());
+                plan.features().size(), sub.getSubscriptionId());
     }
 
     /* --------------------------- Term computation helpers --------------------------- */
@@ -300,11 +301,10 @@ public class SubscriptionProvisioningService {
 
     /* --------------------------- Tiny utils --------------------------- */
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> safeParseJson(String json) {
-        if (!StringUtils.hasText(json)) return Map.of();
+    private Map<String, Object> safeParseJson(String raw) {
+        if (!StringUtils.hasText(raw)) return Map.of();
         try {
-            return objectMapper.readValue(json, Map.class);
+            return json.readObjectMap(raw);
         } catch (Exception e) {
             log.debug("Failed to parse JSON payload for enrichment: {}", e.getMessage());
             return Map.of();
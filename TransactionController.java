@@ -5,6 +5,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
 @RestController
 @RequestMapping("/api/v1/billing/transaction")
@@ -16,18 +19,36 @@ public class TransactionController {
     /**
      * GET /getData?tenantId=...&billingId=...&page=0&size=10
      * Returns SUCCESS and FAILED payments for the tenant+billing, newest first, paginated.
+     *
+     * Keyset mode: GET /getData?tenantId=...&billingId=...&mode=cursor&size=10[&cursor=...][&includeTotal=true]
+     * Pass the returned nextCursor to fetch the next page; totals are omitted unless includeTotal=true.
+     *
+     * Offset mode returns totals by default; includeTotal=false switches to slice mode (hasNext, no totals).
      */
     @GetMapping("/getData")
     public ResponseEntity<TransactionService.PageResponse<TransactionService.TransactionView>> getData(
             @RequestParam("tenantId") String tenantId,
             @RequestParam("billingId") String billingId,
             @RequestParam(value = "page", required = false) Integer page,
-            @RequestParam(value = "size", required = false) Integer size
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "mode", required = false) String mode,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "includeTotal", required = false) Boolean includeTotal
     ) {
         if (!StringUtils.hasText(tenantId) || !StringUtils.hasText(billingId)) {
             return ResponseEntity.ok(new TransactionService.PageResponse<>(0,0,0,0, java.util.List.of()));
         }
-        var resp = transactionService.getTransactions(tenantId, billingId, page, size);
+        if ("cursor".equalsIgnoreCase(mode) || StringUtils.hasText(cursor)) {
+            try {
+                return ResponseEntity.ok(
+                        transactionService.getTransactionsByCursor(tenantId, billingId, cursor, size,
+                                Boolean.TRUE.equals(includeTotal)));
+            } catch (IllegalArgumentException ex) {
+                throw new ResponseStatusException(BAD_REQUEST, ex.getMessage());
+            }
+        }
+        var resp = transactionService.getTransactions(tenantId, billingId, page, size,
+                !Boolean.FALSE.equals(includeTotal));
         return ResponseEntity.ok(resp);
     }
 }
@@ -1,11 +1,10 @@
 package com.welhire.welhire_subscription_service.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.welhire.welhire_subscription_service.entity.HostedCheckout;
-import com.welhire.welhire_subscription_service.entity.SubscriptionMasterPlan;
+import com.welhire.welhire_subscription_service.entity.HostedCheckoutPayment;
+import com.welhire.welhire_subscription_service.entity.ProviderPayloadEvent;
 import com.welhire.welhire_subscription_service.repository.HostedCheckoutRepository;
-import com.welhire.welhire_subscription_service.repository.SubscriptionMasterPlanRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.*;
@@ -14,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.*;
 
@@ -23,8 +23,11 @@ import java.util.*;
 public class TransactionService {
 
     private final HostedCheckoutRepository hostedCheckoutRepository;
-    private final SubscriptionMasterPlanRepository planRepository;
-    private final ObjectMapper objectMapper;
+    private final PlanCatalogCache planCatalog;
+    private final HostedCheckoutCountService countService;
+    private final HostedCheckoutPaymentService paymentService;
+    private final ProviderPayloadEventService payloadEvents;
+    private final PaymentPayloadExtractor extractor;
 
     // UI/result DTO
     public record TransactionView(
@@ -41,14 +44,24 @@ public class TransactionService {
             String paymentMethod
     ) {}
 
-    // Generic page wrapper
+    // Generic page wrapper (totals/nextCursor omitted from JSON when not computed)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public record PageResponse<T>(
             int page,
             int size,
-            long totalElements,
-            int totalPages,
-            List<T> items
-    ) {}
+            Long totalElements,
+            Integer totalPages,
+            List<T> items,
+            String nextCursor,     // keyset mode only; null on the last page
+            Boolean hasNext        // set when totals are omitted (slice / keyset mode)
+    ) {
+        public PageResponse(int page, int size, long totalElements, int totalPages, List<T> items) {
+            this(page, size, totalElements, totalPages, items, null, null);
+        }
+    }
+
+    // We only care about COMPLETED and FAILED at DB level (normalize later)
+    private static final List<String> DB_STATUSES = List.of("COMPLETED", "FAILED");
 
     /**
      * Return SUCCESS and FAILED transactions for a tenant+billing, newest first, paginated.
@@ -60,38 +73,188 @@ public class TransactionService {
             String billingId,
             Integer page,
             Integer size
+    ) {
+        return getTransactions(tenantId, billingId, page, size, true);
+    }
+
+    /**
+     * Offset paging with optional totals.
+     * includeTotal=true  → totals from the per-status counters (COUNT only if no counter exists yet).
+     * includeTotal=false → "slice" mode: no COUNT at all; totals omitted, hasNext set.
+     */
+    @Transactional(readOnly = true)
+    public PageResponse<TransactionView> getTransactions(
+            String tenantId,
+            String billingId,
+            Integer page,
+            Integer size,
+            boolean includeTotal
     ) {
         if (!StringUtils.hasText(tenantId) || !StringUtils.hasText(billingId)) {
             return new PageResponse<>(0, 0, 0, 0, List.of());
         }
 
+        final String t = tenantId.trim();
+        final String b = billingId.trim();
         int p = (page == null || page < 0) ? 0 : page;
-        int s = (size == null || size <= 0 || size > 200) ? 10 : size;
+        int s = normalizeSize(size);
 
         Pageable pageable = PageRequest.of(p, s, Sort.by(Sort.Direction.DESC, "createdAt"));
 
-        // We only care about COMPLETED and FAILED at DB level (normalize later)
-        List<String> dbStatuses = List.of("COMPLETED", "FAILED");
-        Page<HostedCheckout> pageRows =
-                hostedCheckoutRepository.findByTenantIdAndBillingIdAndStatusIn(
-                        tenantId.trim(), billingId.trim(), dbStatuses, pageable);
+        Slice<HostedCheckout> slice =
+                hostedCheckoutRepository.findSliceByTenantIdAndBillingIdAndStatusIn(t, b, DB_STATUSES, pageable);
+        List<TransactionView> items = toViews(slice.getContent());
 
-        // Map rows → views
-        List<TransactionView> items = new ArrayList<>(pageRows.getNumberOfElements());
-        for (HostedCheckout hc : pageRows.getContent()) {
-            items.add(toView(hc));
+        if (!includeTotal) {
+            return new PageResponse<>(slice.getNumber(), slice.getSize(), null, null, items, null, slice.hasNext());
         }
 
+        long total = exactTotal(t, b);
         return new PageResponse<>(
-                pageRows.getNumber(),
-                pageRows.getSize(),
-                pageRows.getTotalElements(),
-                pageRows.getTotalPages(),
+                slice.getNumber(),
+                slice.getSize(),
+                total,
+                (int) ((total + s - 1) / s),
                 items
         );
     }
 
-    private TransactionView toView(HostedCheckout hc) {
+    /**
+     * Keyset (seek) variant: newest first, continuing strictly after the opaque cursor.
+     * cursor: null/blank for the first page; otherwise the nextCursor of the previous response.
+     * No COUNT query unless includeTotal is true, so latency stays flat on deep pages.
+     */
+    @Transactional(readOnly = true)
+    public PageResponse<TransactionView> getTransactionsByCursor(
+            String tenantId,
+            String billingId,
+            String cursor,
+            Integer size,
+            boolean includeTotal
+    ) {
+        if (!StringUtils.hasText(tenantId) || !StringUtils.hasText(billingId)) {
+            return new PageResponse<>(0, 0, 0, 0, List.of());
+        }
+
+        final String t = tenantId.trim();
+        final String b = billingId.trim();
+        int s = normalizeSize(size);
+
+        // Fetch one extra row to know whether another page exists
+        Pageable limit = PageRequest.of(0, s + 1);
+        List<HostedCheckout> rows;
+        if (StringUtils.hasText(cursor)) {
+            Cursor c = Cursor.decode(cursor);
+            rows = hostedCheckoutRepository.findPageAfter(t, b, DB_STATUSES, c.createdAt(), c.id(), limit);
+        } else {
+            rows = hostedCheckoutRepository.findByTenantIdAndBillingIdAndStatusInOrderByCreatedAtDescIdDesc(
+                    t, b, DB_STATUSES, limit);
+        }
+
+        boolean hasNext = rows.size() > s;
+        if (hasNext) {
+            rows = rows.subList(0, s);
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            HostedCheckout last = rows.get(rows.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        Long total = null;
+        Integer totalPages = null;
+        if (includeTotal) {
+            total = exactTotal(t, b);
+            totalPages = (int) ((total + s - 1) / s);
+        }
+
+        return new PageResponse<>(0, s, total, totalPages, toViews(rows), nextCursor, hasNext);
+    }
+
+    private long exactTotal(String tenantId, String billingId) {
+        return countService.exactTotal(tenantId, billingId, DB_STATUSES)
+                .orElseGet(() -> hostedCheckoutRepository.countByTenantIdAndBillingIdAndStatusIn(
+                        tenantId, billingId, DB_STATUSES));
+    }
+
+    private List<TransactionView> toViews(List<HostedCheckout> rows) {
+        // Resolve plan metadata and persisted payment details for the whole page once (not per row)
+        Map<String, PlanCatalogCache.CatalogPlan> plansByCode = loadPlansByCode(rows);
+        Map<String, HostedCheckoutPayment> paymentsByOrder = loadPaymentsByOrder(rows);
+        Map<String, ProviderPayloadEvent> latestEvents = loadLatestEventsForMissing(rows, paymentsByOrder);
+
+        // Map rows → views
+        List<TransactionView> items = new ArrayList<>(rows.size());
+        for (HostedCheckout hc : rows) {
+            HostedCheckoutPayment payment = paymentsByOrder.get(hc.getOrderId());
+            if (payment == null) {
+                payment = fallbackPayment(hc, latestEvents.get(hc.getOrderId()));
+            }
+            items.add(toView(hc, plansByCode, payment));
+        }
+        return items;
+    }
+
+    private static int normalizeSize(Integer size) {
+        return (size == null || size <= 0 || size > 200) ? 10 : size;
+    }
+
+    /**
+     * Bulk enrichment: collect the distinct plan codes on the page and resolve them from the catalog snapshot.
+     */
+    private Map<String, PlanCatalogCache.CatalogPlan> loadPlansByCode(List<HostedCheckout> rows) {
+        Set<String> codes = new HashSet<>();
+        for (HostedCheckout hc : rows) {
+            if (StringUtils.hasText(hc.getPlanCode())) {
+                codes.add(hc.getPlanCode());
+            }
+        }
+        if (codes.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, PlanCatalogCache.CatalogPlan> catalog = planCatalog.current().byCode();
+        Map<String, PlanCatalogCache.CatalogPlan> out = new HashMap<>(codes.size() * 2);
+        for (String code : codes) {
+            PlanCatalogCache.CatalogPlan p = catalog.get(code);
+            if (p != null) out.put(code, p);
+        }
+        return out;
+    }
+
+    private Map<String, HostedCheckoutPayment> loadPaymentsByOrder(List<HostedCheckout> rows) {
+        Set<String> orderIds = new HashSet<>();
+        for (HostedCheckout hc : rows) {
+            if (StringUtils.hasText(hc.getOrderId())) {
+                orderIds.add(hc.getOrderId());
+            }
+        }
+        return paymentService.findByOrderIds(orderIds);
+    }
+
+    /** Latest webhook / status-check payload (one batched query) for rows that have no persisted payment details yet. */
+    private Map<String, ProviderPayloadEvent> loadLatestEventsForMissing(
+            List<HostedCheckout> rows, Map<String, HostedCheckoutPayment> paymentsByOrder) {
+        Set<String> missing = new HashSet<>();
+        for (HostedCheckout hc : rows) {
+            if (StringUtils.hasText(hc.getOrderId()) && !paymentsByOrder.containsKey(hc.getOrderId())) {
+                missing.add(hc.getOrderId());
+            }
+        }
+        return missing.isEmpty() ? Map.of()
+                : payloadEvents.findLatest(missing, ProviderPayloadEventService.PAYMENT_SOURCES);
+    }
+
+    /** Not yet backfilled: parse the latest payload event, or the legacy merged blob for old rows. */
+    private HostedCheckoutPayment fallbackPayment(HostedCheckout hc, ProviderPayloadEvent latest) {
+        PaymentPayloadExtractor.PaymentExtract pe = (latest != null)
+                ? extractor.extract(latest.getPayload())
+                : extractor.extractFromMerged(hc.getResponsePayloadJson());
+        return toPayment(pe);
+    }
+
+    private TransactionView toView(HostedCheckout hc,
+                                   Map<String, PlanCatalogCache.CatalogPlan> plansByCode,
+                                   HostedCheckoutPayment payment) {
         String planCode = nz(hc.getPlanCode());
         String currency = nz(hc.getCurrency());
         String expiringTime = hc.getExpiringTime() != null ? hc.getExpiringTime().toString() : null;
@@ -102,29 +265,20 @@ public class TransactionService {
         // Plan metadata
         String planCategory = null;
         String intervalUnit = null;
-        if (StringUtils.hasText(planCode)) {
-            planRepository.findByExternalPlanCode(planCode).ifPresent(p -> {
-                // lambda requires effectively final locals; use array hack or small holder
-            });
-            Optional<SubscriptionMasterPlan> opt = planRepository.findByExternalPlanCode(planCode);
-            if (opt.isPresent()) {
-                SubscriptionMasterPlan p = opt.get();
-                planCategory = nz(p.getCategory());
-                intervalUnit = normalizeIntervalUnit(p.getIntervalUnit());
-            }
+        PlanCatalogCache.CatalogPlan p = StringUtils.hasText(planCode) ? plansByCode.get(planCode) : null;
+        if (p != null) {
+            planCategory = nz(p.category());
+            intervalUnit = normalizeIntervalUnit(p.intervalUnit());
         }
 
-        // Extract payment payload (use last valid JSON block from merged response)
-        PaymentExtract pe = extractFromResponsePayload(hc.getResponsePayloadJson());
-
         // Fill currency from payment payload if DB currency is blank
-        if (!StringUtils.hasText(currency) && StringUtils.hasText(pe.currency)) {
-            currency = pe.currency;
+        if (!StringUtils.hasText(currency) && StringUtils.hasText(payment.getCurrency())) {
+            currency = payment.getCurrency();
         }
 
         // Purchase date — prefer payment.date; else createdAt
-        String purchaseDate = StringUtils.hasText(pe.date)
-                ? pe.date
+        String purchaseDate = StringUtils.hasText(payment.getPaymentDate())
+                ? payment.getPaymentDate()
                 : (hc.getCreatedAt() != null ? hc.getCreatedAt().toString() : null);
 
         return new TransactionView(
@@ -132,92 +286,25 @@ public class TransactionService {
                 planCategory,
                 intervalUnit,
                 purchaseDate,
-                pe.invoiceId,
-                pe.amount,
+                payment.getInvoiceId(),
+                payment.getAmount(),
                 currency,
                 normalized,
                 expiringTime,
-                pe.email,
-                pe.paymentMethod
+                payment.getEmail(),
+                payment.getPaymentMethod()
         );
     }
 
-    /* ==========================  Payment JSON extraction  ========================== */
-
-    private static final String MERGE_DELIM = "\n\n---\n\n";
-
-    private PaymentExtract extractFromResponsePayload(String mergedJson) {
-        PaymentExtract out = new PaymentExtract();
-
-        if (!StringUtils.hasText(mergedJson)) {
-            return out;
-        }
-
-        String json = lastParsableBlock(mergedJson);
-        Map<String, Object> root = null;
-        try {
-            root = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
-        } catch (Exception e) {
-            log.debug("Could not parse response_payload_json: {}", shorten(json));
-            return out;
-        }
-
-        // Prefer Zoho "payment" shape
-        if (root.get("payment") instanceof Map) {
-            Map<String, Object> p = castMap(root.get("payment"));
-
-            out.date = asText(p.get("date"));
-            out.email = asText(p.get("email"));
-
-            // payment method
-            String method = asText(p.get("payment_mode"));
-            if (!StringUtils.hasText(method)) {
-                method = asText(nested(p, "autotransaction", "payment_gateway"));
-            }
-            out.paymentMethod = method;
-
-            // currency
-            out.currency = asText(p.get("currency_code"));
-
-            // amount
-            out.amount = asBigDecimal(p.get("amount"));
-            if (out.amount == null) {
-                Map<String, Object> inv0 = firstInvoice(p);
-                if (inv0 != null) {
-                    out.amount = asBigDecimal(inv0.get("invoice_amount"));
-                }
-            }
-
-            // invoice id
-            out.invoiceId = firstInvoiceField(p, "invoice_id");
-            return out;
-        }
-
-        // Fallbacks (hostedpage or any other flat formats if ever present)
-        out.email = asText(nested(root, "data", "customer_email"));
-        out.paymentMethod = asText(nested(root, "data", "payment_mode"));
-        out.currency = asText(nested(root, "data", "currency"));
-        out.amount = asBigDecimal(nested(root, "data", "amount"));
-        out.invoiceId = asText(nested(root, "data", "invoice_id"));
-        out.date = asText(nested(root, "data", "date"));
-        return out;
-    }
-
-    private String lastParsableBlock(String merged) {
-        if (merged.contains(MERGE_DELIM)) {
-            String[] parts = merged.split(MERGE_DELIM);
-            for (int i = parts.length - 1; i >= 0; i--) {
-                String block = parts[i].trim();
-                if (block.isEmpty()) continue;
-                if (looksLikeJson(block)) return block;
-            }
-        }
-        return merged.trim();
-    }
-
-    private boolean looksLikeJson(String s) {
-        String t = s.trim();
-        return (t.startsWith("{") && t.endsWith("}")) || (t.startsWith("[") && t.endsWith("]"));
+    private HostedCheckoutPayment toPayment(PaymentPayloadExtractor.PaymentExtract pe) {
+        return HostedCheckoutPayment.builder()
+                .invoiceId(pe.getInvoiceId())
+                .amount(pe.getAmount())
+                .currency(pe.getCurrency())
+                .email(pe.getEmail())
+                .paymentMethod(pe.getPaymentMethod())
+                .paymentDate(pe.getDate())
+                .build();
     }
 
     /* ==========================  Tiny helpers  ========================== */
@@ -235,61 +322,24 @@ public class TransactionService {
 
     private static String nz(String s) { return s == null ? "" : s; }
 
-    private String shorten(String s) {
-        if (s == null) return "";
-        return s.length() > 600 ? s.substring(0, 600) + "...(truncated)" : s;
-    }
-
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> castMap(Object o) {
-        return (o instanceof Map<?,?> m) ? (Map<String, Object>) m : Map.of();
-    }
-
-    private String asText(Object o) {
-        return (o == null) ? null : String.valueOf(o);
-    }
+    /**
+     * Opaque keyset cursor: base64url("createdAt|id"). createdAt is ISO-8601 with full precision.
+     */
+    private record Cursor(OffsetDateTime createdAt, Long id) {
 
-    private BigDecimal asBigDecimal(Object o) {
-        if (o == null) return null;
-        try {
-            if (o instanceof Number n) return new BigDecimal(n.toString());
-            String t = String.valueOf(o).trim();
-            return t.isEmpty() ? null : new BigDecimal(t);
-        } catch (Exception e) {
-            return null;
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
         }
-    }
-
-    @SuppressWarnings("unchecked")
-    private Object nested(Map<String, Object> m, String key, String nestedKey) {
-        if (m == null) return null;
-        Object inner = m.get(key);
-        if (!(inner instanceof Map<?,?> im)) return null;
-        return ((Map<String, Object>) im).get(nestedKey);
-    }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> firstInvoice(Map<String, Object> payment) {
-        Object invs = payment.get("invoices");
-        if (invs instanceof List<?> l && !l.isEmpty()) {
-            Object first = l.get(0);
-            if (first instanceof Map<?,?> m) return (Map<String, Object>) m;
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+                int sep = raw.lastIndexOf('|');
+                return new Cursor(OffsetDateTime.parse(raw.substring(0, sep)), Long.valueOf(raw.substring(sep + 1)));
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
         }
-        return null;
-    }
-
-    private String firstInvoiceField(Map<String, Object> payment, String k) {
-        Map<String, Object> inv0 = firstInvoice(payment);
-        return inv0 == null ? null : asText(inv0.get(k));
-    }
-
-    // internal holder
-    private static final class PaymentExtract {
-        String date;
-        String email;
-        String paymentMethod;
-        String currency;
-        BigDecimal amount;
-        String invoiceId;
     }
 }
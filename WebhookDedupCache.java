@@ -0,0 +1,83 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.service.CheckoutService.WebhookResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded, TTL-based memory of recently accepted webhooks, keyed by a fingerprint of
+ * provider event id + signature + body. Exact replays (Zoho re-deliveries) short-circuit
+ * to the previous WebhookResult without parsing further or touching the database.
+ */
+@Slf4j
+@Component
+public class WebhookDedupCache {
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    private record Entry(WebhookResult result, long expiresAt) {}
+
+    public WebhookDedupCache(
+            @Value("${billing.webhook.dedup.enabled:true}") boolean enabled,
+            @Value("${billing.webhook.dedup.max-entries:10000}") int maxEntries,
+            @Value("${billing.webhook.dedup.ttl:PT10M}") Duration ttl) {
+        this.enabled = enabled;
+        this.ttlMillis = ttl.toMillis();
+        // Insertion-ordered: the eldest entry is also the first to expire
+        this.entries = new LinkedHashMap<>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public String fingerprint(ParsedWebhook wh, String signature) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(nz(wh.eventId()).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+            md.update(nz(signature).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+            md.update(nz(wh.rawBody()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Optional<WebhookResult> get(String fingerprint) {
+        if (!enabled) return Optional.empty();
+        synchronized (entries) {
+            Entry e = entries.get(fingerprint);
+            if (e == null) return Optional.empty();
+            if (e.expiresAt() < System.currentTimeMillis()) {
+                entries.remove(fingerprint);
+                return Optional.empty();
+            }
+            return Optional.of(e.result());
+        }
+    }
+
+    /** Remember an accepted result; rejected ones are not cached so a later retry is processed again. */
+    public void put(String fingerprint, WebhookResult result) {
+        if (!enabled || result == null || !result.accepted()) return;
+        synchronized (entries) {
+            entries.put(fingerprint, new Entry(result, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    private static String nz(String s) { return s == null ? "" : s; }
+}
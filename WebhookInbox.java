@@ -0,0 +1,69 @@
+package com.welhire.welhire_subscription_service.entity;
+
+import com.welhire.welhire_subscription_service.converter.CompressedPayloadConverter;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Durable queue entry for a received payment webhook (async ingestion mode).
+ * NEW → PROCESSING → DONE, or back to NEW for a retry (not before nextAttemptAt), or FAILED after max attempts.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+@Entity
+@Table(
+    name = "webhook_inbox",
+    indexes = {
+        @Index(name = "idx_webhook_inbox_status_id", columnList = "status, id"),
+        @Index(name = "idx_webhook_inbox_correlation", columnList = "correlation_key, id")
+    }
+)
+public class WebhookInbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    // Resolved orderId (hosted_page_id when it cannot be resolved yet); entries with the same key are processed in id order
+    @Column(name = "correlation_key", length = 128)
+    private String correlationKey;
+
+    @Column(name = "provider_header", length = 64)
+    private String providerHeader;
+
+    @Column(name = "signature", length = 256)
+    private String signature;
+
+    @Convert(converter = CompressedPayloadConverter.class)
+    @Column(name = "raw_body", nullable = false, columnDefinition = "text")
+    private String rawBody;
+
+    // NEW | PROCESSING | DONE | FAILED
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "received_at", nullable = false)
+    private OffsetDateTime receivedAt;
+
+    // Retry backoff: a NEW entry is not claimed before this time (null = immediately)
+    @Column(name = "next_attempt_at")
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(name = "claimed_at")
+    private OffsetDateTime claimedAt;
+
+    @Column(name = "processed_at")
+    private OffsetDateTime processedAt;
+
+    @Column(name = "result_message", length = 255)
+    private String resultMessage;
+
+    @Column(name = "last_error", length = 2000)
+    private String lastError;
+}
@@ -0,0 +1,55 @@
+package com.welhire.welhire_subscription_service.repository;
+
+import com.welhire.welhire_subscription_service.entity.WebhookInbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface WebhookInboxRepository extends JpaRepository<WebhookInbox, Long> {
+
+    /**
+     * Lock the next processable entries (skipping rows locked by other nodes).
+     * An entry is only eligible when no earlier entry with the same correlation key is still pending,
+     * which keeps per-order processing in arrival order (a later entry also waits out an earlier one's retry delay).
+     * Stale PROCESSING rows (crashed worker) are reclaimed.
+     */
+    @Query(value = """
+                SELECT w.*
+                FROM webhook_inbox w
+                WHERE ((w.status = 'NEW' AND (w.next_attempt_at IS NULL OR w.next_attempt_at <= :now))
+                       OR (w.status = 'PROCESSING' AND w.claimed_at < :staleBefore))
+                  AND NOT EXISTS (
+                        SELECT 1 FROM webhook_inbox p
+                        WHERE w.correlation_key IS NOT NULL
+                          AND p.correlation_key = w.correlation_key
+                          AND p.id < w.id
+                          AND p.status IN ('NEW', 'PROCESSING'))
+                ORDER BY w.id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<WebhookInbox> lockNextBatch(@Param("now") OffsetDateTime now,
+                                     @Param("staleBefore") OffsetDateTime staleBefore,
+                                     @Param("limit") int limit);
+
+    /**
+     * Retention: delete up to :limit DONE entries processed before :cutoff (FAILED ones are kept for inspection).
+     */
+    @Modifying
+    @Query(value = """
+                DELETE FROM webhook_inbox
+                WHERE id IN (
+                    SELECT id
+                    FROM webhook_inbox
+                    WHERE status = 'DONE'
+                      AND processed_at < :cutoff
+                    ORDER BY id
+                    LIMIT :limit
+                )
+            """, nativeQuery = true)
+    int deleteDoneBefore(@Param("cutoff") OffsetDateTime cutoff, @Param("limit") int limit);
+}
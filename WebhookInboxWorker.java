@@ -0,0 +1,202 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.entity.WebhookInbox;
+import com.welhire.welhire_subscription_service.repository.WebhookInboxRepository;
+import com.welhire.welhire_subscription_service.service.CheckoutService.WebhookResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains webhook_inbox (async ingestion mode).
+ * Each poll claims at most as many entries as there are idle workers (FOR UPDATE SKIP LOCKED, at most one
+ * entry per correlation key), hands them to a fixed-size pool and returns without waiting, so the shared
+ * scheduler thread is never blocked. Each entry ends DONE, back in NEW with exponential backoff
+ * (base-delay * 2^(attempts-1), capped at max-delay), or FAILED after max-attempts.
+ * Ingestion already acked the provider, so a rejected webhook (e.g. its checkout cannot be matched yet) is retried
+ * like a failure; only rejections a retry cannot fix (bad signature / JSON) go straight to FAILED.
+ * DONE entries are deleted after done-retention; FAILED ones are kept.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookInboxWorker {
+
+    // CheckoutService rejections that a retry cannot fix
+    private static final Set<String> PERMANENT_REJECTIONS = Set.of("invalid signature", "invalid json");
+
+    private final WebhookInboxRepository inboxRepo;
+    private final CheckoutService checkoutService;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${billing.webhook.async.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.webhook.async.workers:4}")
+    private int workers;
+
+    @Value("${billing.webhook.async.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${billing.webhook.async.base-delay:PT5S}")
+    private Duration baseDelay;
+
+    @Value("${billing.webhook.async.max-delay:PT10M}")
+    private Duration maxDelay;
+
+    @Value("${billing.webhook.async.stale-after:PT5M}")
+    private Duration staleAfter;
+
+    @Value("${billing.webhook.async.done-retention:P7D}")
+    private Duration doneRetention;
+
+    @Value("${billing.webhook.async.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private ExecutorService pool;
+    private TransactionTemplate tx;
+
+    @PostConstruct
+    void start() {
+        tx = new TransactionTemplate(txManager);
+        if (enabled) {
+            pool = Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+                Thread t = new Thread(r, "webhook-inbox-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pool != null) pool.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${billing.webhook.async.poll-interval:PT1S}")
+    public void poll() {
+        if (!enabled || pool == null) return;
+
+        int idle = Math.max(1, workers) - inFlight.get();
+        if (idle <= 0) return;
+
+        List<WebhookInbox> batch = claim(idle);
+        for (WebhookInbox entry : batch) {
+            inFlight.incrementAndGet();
+            try {
+                pool.execute(() -> {
+                    try {
+                        process(entry);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet(); // shutting down; the entry is reclaimed once stale
+            }
+        }
+    }
+
+    private List<WebhookInbox> claim(int limit) {
+        return tx.execute(status -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            List<WebhookInbox> rows = inboxRepo.lockNextBatch(now, now.minus(staleAfter), limit);
+            for (WebhookInbox w : rows) {
+                w.setStatus("PROCESSING");
+                w.setClaimedAt(now);
+                w.setAttempts(w.getAttempts() + 1);
+            }
+            return inboxRepo.saveAll(rows);
+        });
+    }
+
+    private void process(WebhookInbox entry) {
+        WebhookResult res;
+        try {
+            res = checkoutService.processPaymentWebhook(
+                    ParsedWebhook.parse(headersOf(entry), entry.getRawBody()));
+        } catch (Exception e) {
+            retryOrFail(entry, e.getMessage(), e);
+            return;
+        }
+        if (res.accepted()) {
+            finish(entry.getId(), "DONE", null, res.message(), null);
+        } else if (PERMANENT_REJECTIONS.contains(res.message())) {
+            log.error("Webhook inbox id={} rejected: {} → FAILED", entry.getId(), res.message());
+            finish(entry.getId(), "FAILED", null, res.message(), "rejected: " + res.message());
+        } else {
+            retryOrFail(entry, "rejected: " + res.message(), null);
+        }
+    }
+
+    private void retryOrFail(WebhookInbox entry, String error, Exception cause) {
+        boolean giveUp = entry.getAttempts() >= maxAttempts;
+        OffsetDateTime retryAt = giveUp ? null : OffsetDateTime.now().plus(backoff(entry.getAttempts()));
+        log.error("Webhook inbox id={} attempt {}/{} failed{}: {}",
+                entry.getId(), entry.getAttempts(), maxAttempts,
+                giveUp ? " → FAILED" : " → retry at " + retryAt, error, cause);
+        finish(entry.getId(), giveUp ? "FAILED" : "NEW", retryAt, null, error);
+    }
+
+    /** Delete DONE entries older than done-retention, in bounded batches (one short transaction each). */
+    @Scheduled(fixedDelayString = "${billing.webhook.async.purge-interval:PT1H}")
+    public void purgeDone() {
+        if (!enabled) return;
+
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(doneRetention);
+        int total = 0;
+        Integer n;
+        do {
+            n = tx.execute(s -> inboxRepo.deleteDoneBefore(cutoff, purgeBatchSize));
+            total += n == null ? 0 : n;
+        } while (n != null && n >= purgeBatchSize);
+        if (total > 0) {
+            log.info("Purged {} processed webhook inbox entries older than {}", total, doneRetention);
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        long factor = 1L << Math.min(Math.max(attempts - 1, 0), 20);
+        Duration d = baseDelay.multipliedBy(factor);
+        return d.compareTo(maxDelay) > 0 ? maxDelay : d;
+    }
+
+    private void finish(Long id, String status, OffsetDateTime nextAttemptAt, String message, String error) {
+        tx.executeWithoutResult(s -> inboxRepo.findById(id).ifPresent(w -> {
+            w.setStatus(status);
+            w.setNextAttemptAt(nextAttemptAt);
+            w.setProcessedAt(OffsetDateTime.now());
+            w.setResultMessage(message);
+            w.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), 2000)));
+            inboxRepo.save(w);
+        }));
+    }
+
+    private MultiValueMap<String, String> headersOf(WebhookInbox entry) {
+        MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
+        if (StringUtils.hasText(entry.getSignature())) {
+            headers.add(WebhookIngestionService.SIGNATURE_HEADER, entry.getSignature());
+        }
+        if (StringUtils.hasText(entry.getProviderHeader())) {
+            headers.add(WebhookIngestionService.PROVIDER_HEADER, entry.getProviderHeader());
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,105 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.welhire.welhire_subscription_service.entity.WebhookInbox;
+import com.welhire.welhire_subscription_service.repository.WebhookInboxRepository;
+import com.welhire.welhire_subscription_service.service.CheckoutService.WebhookResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Entry point for payment webhooks.
+ * - Sync mode (default): processes inline via CheckoutService.processPaymentWebhook.
+ * - Async mode (billing.webhook.async.enabled=true): verifies the signature, stores the raw webhook in
+ *   webhook_inbox keyed by its resolved orderId and acknowledges immediately; WebhookInboxWorker applies it
+ *   later with bounded concurrency. Unsigned / oversized bodies are rejected before anything is persisted.
+ * Exact replays of an accepted delivery are answered from WebhookDedupCache in both modes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WebhookIngestionService {
+
+    static final String SIGNATURE_HEADER = "X-Zoho-Webhook-Signature";
+    static final String PROVIDER_HEADER = "X-Provider";
+
+    private final CheckoutService checkoutService;
+    private final WebhookInboxRepository inboxRepo;
+    private final WebhookDedupCache dedup;
+    private final WebhookSignatureVerifier signatureVerifier;
+
+    @Value("${billing.webhook.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${billing.webhook.max-body-chars:262144}")
+    private int maxBodyChars;
+
+    public WebhookResult ingest(MultiValueMap<String, String> headers, String rawBody) {
+        if (rawBody != null && rawBody.length() > maxBodyChars) {
+            log.warn("Webhook body of {} chars exceeds limit {}; rejected", rawBody.length(), maxBodyChars);
+            return WebhookResult.builder().accepted(false).message("payload too large").build();
+        }
+        ParsedWebhook wh = ParsedWebhook.parse(headers, rawBody);
+
+        // Exact replay of an already accepted delivery → previous result, no DB work
+        String fingerprint = dedup.fingerprint(wh, signatureOf(wh));
+        var previous = dedup.get(fingerprint);
+        if (previous.isPresent()) {
+            log.debug("Duplicate webhook (orderId={}) short-circuited", previous.get().orderId());
+            return previous.get();
+        }
+
+        WebhookResult res = asyncEnabled ? enqueue(wh) : checkoutService.processPaymentWebhook(wh);
+        dedup.put(fingerprint, res);
+        return res;
+    }
+
+    // Single insert: runs in the repository's own transaction
+    private WebhookResult enqueue(ParsedWebhook wh) {
+        if (!StringUtils.hasText(wh.rawBody())) {
+            return WebhookResult.builder().accepted(false).message("empty body").provider(wh.provider()).build();
+        }
+        // Authenticate before persisting (the worker verifies again when it applies the entry)
+        if (signatureVerifier.isConfigured() && !signatureVerifier.verify(wh)) {
+            log.warn("Webhook signature invalid. Rejecting before enqueue.");
+            return WebhookResult.builder().accepted(false).message("invalid signature").provider(wh.provider()).build();
+        }
+
+        String signature = signatureOf(wh);
+        String orderId = checkoutService.resolveOrderId(wh).orElse(null);
+
+        WebhookInbox entry = inboxRepo.save(WebhookInbox.builder()
+                .correlationKey(StringUtils.hasText(orderId) ? orderId : correlationKey(wh))
+                .providerHeader(wh.header(PROVIDER_HEADER))
+                .signature(signature)
+                .rawBody(wh.rawBody())
+                .status("NEW")
+                .attempts(0)
+                .receivedAt(OffsetDateTime.now())
+                .build());
+
+        log.debug("Webhook queued id={} key={}", entry.getId(), entry.getCorrelationKey());
+        return WebhookResult.builder()
+                .accepted(true)
+                .message("queued")
+                .provider(wh.provider())
+                .orderId(orderId)
+                .build();
+    }
+
+    static String signatureOf(ParsedWebhook wh) {
+        String signature = wh.header(SIGNATURE_HEADER);
+        return StringUtils.hasText(signature) ? signature : wh.header(SIGNATURE_HEADER.toLowerCase());
+    }
+
+    /** Ordering key without a DB lookup: explicit orderId if the payload carries one, else the hosted page id. */
+    static String correlationKey(ParsedWebhook wh) {
+        if (StringUtils.hasText(wh.orderId())) return wh.orderId();
+        return StringUtils.hasText(wh.hostedpageId()) ? wh.hostedpageId() : null;
+    }
+}
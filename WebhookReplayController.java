@@ -0,0 +1,45 @@
+package com.welhire.welhire_subscription_service.controller;
+
+import com.welhire.welhire_subscription_service.service.WebhookReplayService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Bulk webhook replay:
+ *  - POST /api/v1/billing/webhook/replay  (application/x-ndjson)
+ *    one {"signature","provider","body"} per line → one {"line","accepted","message","orderId","status"} per line
+ *    The body is streamed; a declared Content-Length over the limit is a 400, a limit hit mid-stream ends
+ *    the response with a final error line.
+ */
+@RestController
+@RequestMapping("/api/v1/billing/webhook")
+@RequiredArgsConstructor
+public class WebhookReplayController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final WebhookReplayService replayService;
+
+    @PostMapping(value = "/replay", consumes = NDJSON, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> replay(
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            InputStream body) {
+        try {
+            replayService.checkDeclaredSize(contentLength);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(BAD_REQUEST, ex.getMessage());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(out -> replayService.replay(body, out));
+    }
+}
@@ -0,0 +1,288 @@
+package com.welhire.welhire_subscription_service.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.welhire.welhire_subscription_service.service.CheckoutService.WebhookResult;
+import com.welhire.welhire_subscription_service.util.JsonCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk replay of provider webhooks (e.g. after an outage).
+ * Input: NDJSON, one {"signature": "...", "provider": "...", "body": "<raw webhook body>"} per line,
+ * read as a stream in chunks of batch-size lines (capped at max-bytes and max-items per request).
+ * - Lines of a chunk are parsed and signature-checked in parallel on a dedicated pool.
+ * - Valid webhooks of a chunk are grouped by orderId; each group is applied in input order in one transaction
+ *   under that order's lock (CheckoutService.processOrderWebhooks), so a replay holds one order lock at a time.
+ *   If a group fails, its webhooks are retried one by one, so one bad webhook cannot fail its neighbours.
+ * Output: NDJSON, one result per input line (in input order), flushed after each chunk. When a size limit stops
+ * the stream, the complete lines read so far are still applied and reported before the final limit line.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WebhookReplayService {
+
+    private final CheckoutService checkoutService;
+    private final WebhookSignatureVerifier signatureVerifier;
+    private final WebhookDedupCache dedup;
+    private final JsonCodec json;
+
+    @Value("${billing.webhook.replay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${billing.webhook.replay.max-items:10000}")
+    private int maxItems;
+
+    @Value("${billing.webhook.replay.max-bytes:16777216}")
+    private long maxBytes;
+
+    @Value("${billing.webhook.replay.validate-threads:0}")
+    private int validateThreads;
+
+    private ExecutorService validatePool;
+
+    /** One NDJSON input line. */
+    public record ReplayLine(String signature, String provider, String body) {}
+
+    /** One NDJSON output line; {@code line} is the 1-based input line number. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ReplayResult(int line, boolean accepted, String message, String orderId, String status) {}
+
+    private record Item(int line, ParsedWebhook webhook, String fingerprint) {}
+
+    @PostConstruct
+    void start() {
+        int n = validateThreads > 0 ? validateThreads : Runtime.getRuntime().availableProcessors();
+        validatePool = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "webhook-replay-validate");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        if (validatePool != null) validatePool.shutdown();
+    }
+
+    /**
+     * Reject a request whose declared size is over the limit before streaming starts (maps to 400).
+     */
+    public void checkDeclaredSize(Long contentLength) {
+        if (contentLength != null && contentLength > maxBytes) {
+            throw new IllegalArgumentException("Request too large; max " + maxBytes + " bytes");
+        }
+    }
+
+    public void replay(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new LimitedInputStream(in, maxBytes), StandardCharsets.UTF_8));
+        List<String> chunk = new ArrayList<>(batchSize);
+        int lineNo = 0;
+        String limitError = null;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (lineNo + 1 > maxItems) {
+                    throw new IllegalArgumentException("Too many lines; max " + maxItems + " per request");
+                }
+                lineNo++;
+                chunk.add(line);
+                if (chunk.size() >= batchSize) {
+                    applyChunk(lineNo - chunk.size() + 1, chunk, out);
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            limitError = e.getMessage();
+        }
+        // Complete lines still pending (also when a limit stopped the stream) are applied and reported
+        if (!chunk.isEmpty()) {
+            applyChunk(lineNo - chunk.size() + 1, chunk, out);
+        }
+        if (limitError != null) {
+            // Response is already streaming: report the limit as a final line for the first line not read
+            log.warn("Replay stopped at line {}: {}", lineNo + 1, limitError);
+            write(new ReplayResult(lineNo + 1, false, limitError, null, null), out);
+            out.flush();
+        }
+    }
+
+    private void applyChunk(int firstLine, List<String> lines, OutputStream out) throws IOException {
+        // 1) Parse + verify in parallel (CPU only, no DB); results keep input order
+        List<CompletableFuture<Object>> checks = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            int line = firstLine + i;
+            String text = lines.get(i);
+            if (StringUtils.hasText(text)) {
+                checks.add(CompletableFuture.supplyAsync(() -> validate(line, text), validatePool));
+            }
+        }
+
+        // 2) Answer rejects and known duplicates; group the rest by orderId (input order kept within a group)
+        Map<Integer, ReplayResult> results = new LinkedHashMap<>();
+        Map<String, List<Item>> groups = new LinkedHashMap<>();
+        List<Item> unresolved = new ArrayList<>();
+        for (CompletableFuture<Object> check : checks) {
+            Object c = check.join();
+            if (c instanceof ReplayResult rejected) {
+                results.put(rejected.line(), rejected);
+                continue;
+            }
+            Item item = (Item) c;
+            results.put(item.line(), null); // placeholder keeps the output in input order
+            var previous = dedup.get(item.fingerprint());
+            if (previous.isPresent()) {
+                results.put(item.line(), toResult(item.line(), previous.get()));
+                continue;
+            }
+            String orderId = checkoutService.resolveOrderId(item.webhook()).orElse(null);
+            if (orderId == null) {
+                unresolved.add(item);
+            } else {
+                groups.computeIfAbsent(orderId, k -> new ArrayList<>()).add(item);
+            }
+        }
+
+        // 3) One transaction per order group; unresolved webhooks go through the single path (which reports why)
+        groups.forEach((orderId, items) -> applyGroup(orderId, items, results));
+        for (Item item : unresolved) {
+            results.put(item.line(), apply(item));
+        }
+
+        for (ReplayResult r : results.values()) {
+            write(r, out);
+        }
+        out.flush();
+    }
+
+    private void applyGroup(String orderId, List<Item> items, Map<Integer, ReplayResult> results) {
+        List<WebhookResult> applied;
+        try {
+            applied = checkoutService.processOrderWebhooks(orderId,
+                    items.stream().map(Item::webhook).toList());
+        } catch (RuntimeException e) {
+            log.warn("Replay of {} webhooks for orderId={} failed ({}); retrying one by one",
+                    items.size(), orderId, e.getMessage());
+            for (Item item : items) {
+                results.put(item.line(), apply(item));
+            }
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            dedup.put(item.fingerprint(), applied.get(i));
+            results.put(item.line(), toResult(item.line(), applied.get(i)));
+        }
+    }
+
+    private Object validate(int line, String text) {
+        ReplayLine rl;
+        try {
+            rl = lineReader().readValue(text);
+        } catch (Exception e) {
+            return new ReplayResult(line, false, "malformed line", null, null);
+        }
+        if (rl == null || !StringUtils.hasText(rl.body())) {
+            return new ReplayResult(line, false, "empty body", null, null);
+        }
+
+        MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
+        if (StringUtils.hasText(rl.signature())) headers.add(WebhookIngestionService.SIGNATURE_HEADER, rl.signature());
+        if (StringUtils.hasText(rl.provider())) headers.add(WebhookIngestionService.PROVIDER_HEADER, rl.provider());
+        ParsedWebhook wh = ParsedWebhook.parse(headers, rl.body());
+
+        if (signatureVerifier.isConfigured() && !signatureVerifier.verify(wh)) {
+            return new ReplayResult(line, false, "invalid signature", wh.orderId(), null);
+        }
+        if (!wh.validJson()) {
+            return new ReplayResult(line, false, "invalid JSON", null, null);
+        }
+        return new Item(line, wh, dedup.fingerprint(wh, rl.signature()));
+    }
+
+    private ReplayResult apply(Item item) {
+        try {
+            WebhookResult res = checkoutService.processPaymentWebhook(item.webhook());
+            dedup.put(item.fingerprint(), res);
+            return toResult(item.line(), res);
+        } catch (RuntimeException e) {
+            log.error("Replay of line {} failed: {}", item.line(), e.getMessage(), e);
+            return new ReplayResult(item.line(), false, "processing failed", item.webhook().orderId(), null);
+        }
+    }
+
+    private ReplayResult toResult(int line, WebhookResult r) {
+        return new ReplayResult(line, r.accepted(), r.message(), r.orderId(),
+                r.normalizedStatus() == null ? null : r.normalizedStatus().name());
+    }
+
+    private ObjectReader lineReader() {
+        return json.readerFor(ReplayLine.class);
+    }
+
+    private ObjectWriter resultWriter() {
+        return json.writerFor(ReplayResult.class);
+    }
+
+    private void write(ReplayResult result, OutputStream out) throws IOException {
+        out.write(resultWriter().writeValueAsBytes(result));
+        out.write('\n');
+    }
+
+    /**
+     * Passes through at most {@code limit} bytes, then fails with IllegalArgumentException if more follow
+     * (reads are clamped at the limit, so every byte before it still reaches the reader).
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) add(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (count >= limit) return read(); // -1 at end of input, otherwise over the limit
+            int n = super.read(buf, off, (int) Math.min(len, limit - count));
+            if (n > 0) add(n);
+            return n;
+        }
+
+        private void add(int n) {
+            count += n;
+            if (count > limit) {
+                throw new IllegalArgumentException("Request too large; max " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.welhire.welhire_subscription_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * HMAC-SHA256 verification of Zoho webhook signatures.
+ * - One pre-keyed Mac per thread (Mac is not thread-safe; doFinal() resets it for the next use).
+ * - Provided hex is decoded and compared to the digest in constant time (MessageDigest.isEqual).
+ */
+@Slf4j
+@Component
+public class WebhookSignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    public WebhookSignatureVerifier(@Value("${zoho.org.in.webhook.zohoSecret:}") String secret) {
+        this.key = StringUtils.hasText(secret)
+                ? new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM)
+                : null;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /** False when no webhook secret is configured (signature validation disabled). */
+    public boolean isConfigured() {
+        return key != null;
+    }
+
+    /** True when the webhook carries a signature matching HMAC-SHA256(secret, rawBody). */
+    public boolean verify(ParsedWebhook wh) {
+        String provided = WebhookIngestionService.signatureOf(wh);
+        if (!StringUtils.hasText(provided) || wh.rawBody() == null) return false;
+
+        byte[] expected = sign(wh.rawBody());
+        byte[] given = decodeHex(provided.trim());
+        boolean ok = given != null && MessageDigest.isEqual(expected, given);
+        if (!ok) {
+            log.warn("Zoho signature mismatch. provided={}, computed={}", provided, toHex(expected));
+        }
+        return ok;
+    }
+
+    byte[] sign(String body) {
+        return macs.get().doFinal(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        if (key == null) throw new IllegalStateException("Webhook secret not configured");
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    /* ==========================  Hex helpers  ========================== */
+
+    static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            out[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+
+    /** Lenient on case; null when not valid hex. */
+    static byte[] decodeHex(String s) {
+        if ((s.length() & 1) != 0) return null;
+        byte[] out = new byte[s.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(s.charAt(2 * i), 16);
+            int lo = Character.digit(s.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) return null;
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+}
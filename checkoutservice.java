@@ -1,37 +1,36 @@
 package com.welhire.welhire_subscription_service.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.welhire.welhire_subscription_service.dto.*;
 import com.welhire.welhire_subscription_service.entity.BillingEntity;
 import com.welhire.welhire_subscription_service.entity.BillingEntitySubscription;
 import com.welhire.welhire_subscription_service.entity.HostedCheckout;
-import com.welhire.welhire_subscription_service.entity.PlanPrice;
 import com.welhire.welhire_subscription_service.entity.Pricebook;
-import com.welhire.welhire_subscription_service.entity.SubscriptionMasterPlan;
 import com.welhire.welhire_subscription_service.enums.SubscriptionStatus;
 import com.welhire.welhire_subscription_service.gateway.PaymentGateway;
 import com.welhire.welhire_subscription_service.gateway.PaymentGatewayRegistry;
 import com.welhire.welhire_subscription_service.repository.BillingEntityRepository;
 import com.welhire.welhire_subscription_service.repository.BillingEntitySubscriptionRepository;
 import com.welhire.welhire_subscription_service.repository.HostedCheckoutRepository;
-import com.welhire.welhire_subscription_service.repository.PlanPriceRepository;
 import com.welhire.welhire_subscription_service.repository.PricebookRepository;
-import com.welhire.welhire_subscription_service.repository.SubscriptionMasterPlanRepository;
+import com.welhire.welhire_subscription_service.repository.ProvisioningTaskRepository;
+import com.welhire.welhire_subscription_service.util.JsonCodec;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Checkout flow:
@@ -39,6 +38,10 @@ import java.util.*;
  * - createHostedPage()  <-- now always upserts BillingEntity
  * - checkPaymentStatus()
  * - processPaymentWebhook() <-- provider → our service (source of truth)
+ *
+ * createHostedPage() and checkPaymentStatus() never hold a DB transaction (or pooled connection)
+ * across a PaymentGateway call: they run a short transaction before and after the remote call.
+ * Both phases are bounded by CheckoutExecution (gateway and DB concurrency limits).
  */
 @Slf4j
 @Service
@@ -49,8 +52,7 @@ public class CheckoutService {
     private final BillingEntityRepository billingRepo;
 
     // --- Hosted page flow dependencies ---
-    private final SubscriptionMasterPlanRepository planRepo;
-    private final PlanPriceRepository priceRepo;
+    private final PlanCatalogCache planCatalog;
     private final PricebookRepository pricebookRepo;
     private final HostedCheckoutRepository hostedRepo;
     private final PaymentGatewayRegistry gatewayRegistry;
@@ -61,14 +63,51 @@ public class CheckoutService {
     // Provisioning service (creates subscription on SUCCESS; same-plan-only replacement)
     private final SubscriptionProvisioningService subscriptionProvisioningService;
 
-    // Map plan entity → PlanDtos.PlanView (sorted features, prices, etc.)
-    private final PlanService planService;
+    // Transactional outbox for activation (ProvisioningOutboxWorker), when enabled
+    private final ProvisioningTaskRepository provisioningTasks;
 
-    private final ObjectMapper objectMapper;
+    @Value("${billing.provisioning.outbox.enabled:false}")
+    private boolean provisioningOutbox;
 
-    // Optional HMAC secret for Zoho webhook validation
-    @Value("${zoho.org.in.webhook.zohoSecret:}")
-    private String zohoWebhookSecret;
+    // Same grace HostedCheckoutExpirySweeper waits before persisting EXPIRED
+    @Value("${billing.expiry-sweep.grace:PT15M}")
+    private Duration expiryGrace;
+
+    // Per-order serialization of webhook / status-poll / provisioning work
+    private final OrderLockService orderLocks;
+
+    // Append-only provider payload history (one row per payload)
+    private final ProviderPayloadEventService payloadEvents;
+
+    // Structured payment fields extracted from provider payloads at write time
+    private final HostedCheckoutPaymentService paymentDetails;
+
+    // Per-(tenant, billing, status) counters for COMPLETED/FAILED (transaction page totals)
+    private final HostedCheckoutCountService countService;
+
+    // Precomputed PlanDtos.PlanView per plan (sorted features, prices, etc.)
+    private final PlanViewCache planViews;
+
+    // Shared, preconfigured JSON readers/writers
+    private final JsonCodec json;
+
+    // Optional HMAC validation for Zoho webhooks (disabled when no secret is configured)
+    private final WebhookSignatureVerifier signatureVerifier;
+
+    // Short programmatic transactions around gateway calls
+    private final PlatformTransactionManager txManager;
+
+    // Gateway / DB concurrency limits (and optional virtual-thread mode for controllers)
+    private final CheckoutExecution execution;
+
+    // Concurrent status polls for one hosted page share a single provider call
+    private final GatewayStatusCoalescer statusCoalescer;
+    private TransactionTemplate tx;
+
+    @PostConstruct
+    void initTransactions() {
+        tx = new TransactionTemplate(txManager);
+    }
 
     // ---------------------------------------------------------------------
     // /getBillingDetails
@@ -140,8 +179,59 @@ public class CheckoutService {
     // ---------------------------------------------------------------------
     // /getHostedPage (gateway-agnostic; Zoho adapter today) — NOW UPSERTS BillingEntity
     // ---------------------------------------------------------------------
-    @Transactional
     public GetHostedPageResponse createHostedPage(GetHostedPageRequest req) {
+        // 1-6) Short transaction: validate, upsert BillingEntity, persist HostedCheckout (CREATED)
+        PreparedCheckout prepared = execution.inTransactionSlot(() -> tx.execute(s -> prepareHostedCheckout(req)));
+        final String orderId = prepared.orderId();
+        final String gateway = prepared.gateway();
+
+        // 7) Call selected gateway (Zoho adapter today) — no transaction / connection held
+        PaymentGateway.HostedPageResult res;
+        try {
+            PaymentGateway gw = gatewayRegistry.resolve(gateway);
+            res = execution.callGateway(() -> gw.createHostedPage(prepared.payload()));
+        } catch (RuntimeException e) {
+            // Nothing exists at the provider: drop the CREATED row, as the old single transaction did
+            execution.inTransactionSlot(() -> tx.execute(s -> {
+                hostedRepo.findByOrderId(orderId).ifPresent(hostedRepo::delete);
+                return null;
+            }));
+            throw e;
+        }
+
+        // 8) Short transaction: update HostedCheckout with provider details; mark PENDING
+        orderLocks.withOrderLock(orderId, () -> execution.inTransactionSlot(() -> tx.execute(s -> {
+            orderLocks.lockForTransaction(orderId);
+            HostedCheckout hc = hostedRepo.findByOrderIdForUpdate(orderId)
+                    .orElseThrow(() -> new IllegalStateException("HostedCheckout vanished: " + orderId));
+            hc.setProviderHostedpageId(res.hostedpageId());
+            hc.setProviderDecryptedHostedpageId(res.decryptedHostedpageId());
+            hc.setProviderStatus(res.status());
+            hc.setHostedUrl(res.url());
+            if ("CREATED".equalsIgnoreCase(hc.getStatus())) {
+                updateLocalStatus(hc, "PENDING");
+            }
+            appendProviderPayload(hc, ProviderPayloadEventService.SOURCE_HOSTED_PAGE, res.rawResponseJson());
+            if (res.expiringTime() != null) {
+                hc.setExpiringTime(parseZohoTimeSafe(res.expiringTime())); // tolerant parser
+            }
+            return hostedRepo.save(hc);
+        })));
+
+        // 9) Return to client
+        return GetHostedPageResponse.builder()
+                .orderId(orderId)
+                .gateway(gateway)
+                .hostedpageId(res.hostedpageId())
+                .url(res.url())
+                .status(res.status())
+                .expiringTime(res.expiringTime())
+                .build();
+    }
+
+    private record PreparedCheckout(String orderId, String gateway, Map<String, Object> payload) {}
+
+    private PreparedCheckout prepareHostedCheckout(GetHostedPageRequest req) {
         // 1) Normalize & validate
         final String tenantId = trim(req.getTenantId());
         final String billingId = trim(req.getBillingId());
@@ -164,16 +254,16 @@ public class CheckoutService {
         BillingEntity be = upsertBillingEntityFromRequest(req, pricebookId);
 
         // 4) Ensure plan exists, ACTIVE, and has a price for this currency
-        SubscriptionMasterPlan plan = planRepo.findByExternalPlanCode(planCode)
+        PlanCatalogCache.CatalogPlan plan = planCatalog.findByCode(planCode)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown planCode: " + planCode));
-        if (!Boolean.TRUE.equals(plan.getIsActive())) {
+        if (!Boolean.TRUE.equals(plan.isActive())) {
             throw new IllegalStateException("Plan " + planCode + " is not active");
         }
 
         // 4.a) Guard — no ACTIVE sub for this tenant/billing **for this SAME plan**
         boolean hasActiveForThisPlan = billingSubRepo
                 .existsByBillingEntity_TenantIdAndBillingEntity_BillingIdAndPlan_IdAndStatus(
-                        be.getTenantId(), be.getBillingId(), plan.getId(), SubscriptionStatus.ACTIVE);
+                        be.getTenantId(), be.getBillingId(), plan.id(), SubscriptionStatus.ACTIVE);
         if (hasActiveForThisPlan) {
             throw new IllegalStateException(
                     "An ACTIVE subscription already exists for this tenant/billing on plan " + planCode
@@ -181,7 +271,7 @@ public class CheckoutService {
         }
 
         // Check price availability (will also throw if missing)
-        PlanPrice planPrice = priceRepo.findByPlanIdAndCurrency(plan.getId(), currency)
+        planCatalog.findPrice(plan, currency)
                 .orElseThrow(() -> new IllegalStateException(
                         "No plan price for planCode=" + planCode + " currency=" + currency));
 
@@ -271,42 +361,67 @@ public class CheckoutService {
                 .requestPayloadJson(writeJsonSafe(payload))
                 .build();
         hostedRepo.saveAndFlush(hc);
-
-        // 7) Call selected gateway (Zoho adapter today)
-        PaymentGateway gw = gatewayRegistry.resolve(gateway);
-        PaymentGateway.HostedPageResult res = gw.createHostedPage(payload);
-
-        // 8) Update HostedCheckout with provider details; mark PENDING
-        hc.setProviderHostedpageId(res.hostedpageId());
-        hc.setProviderDecryptedHostedpageId(res.decryptedHostedpageId());
-        hc.setProviderStatus(res.status());
-        hc.setHostedUrl(res.url());
-        hc.setStatus("PENDING");
-        hc.setResponsePayloadJson(res.rawResponseJson());
-        if (res.expiringTime() != null) {
-            hc.setExpiringTime(parseZohoTimeSafe(res.expiringTime())); // tolerant parser
-        }
-        hostedRepo.save(hc);
-
-        // 9) Return to client
-        return GetHostedPageResponse.builder()
-                .orderId(orderId)
-                .gateway(gateway)
-                .hostedpageId(res.hostedpageId())
-                .url(res.url())
-                .status(res.status())
-                .expiringTime(res.expiringTime())
-                .build();
+        return new PreparedCheckout(orderId, gateway, payload);
     }
 
     // ---------------------------------------------------------------------
     // /checkPaymentStatus (also provisions on SUCCESS; idempotent)
     // ---------------------------------------------------------------------
-    @Transactional
     public CheckPaymentStatusResponse checkPaymentStatus(CheckPaymentStatusRequest req) {
         final String orderId = req.getOrderId().trim();
         final String gateway = StringUtils.hasText(req.getGateway()) ? req.getGateway().trim() : "ZOHOBILLING";
+        return refreshFromProvider(orderId, gateway);
+    }
+
+    /**
+     * Controller entry points for the gateway-bound paths: on a virtual thread when
+     * billing.checkout.virtual-threads.enabled=true, otherwise run inline (see CheckoutExecution.submit).
+     */
+    public CompletableFuture<GetHostedPageResponse> createHostedPageAsync(GetHostedPageRequest req) {
+        return execution.submit(() -> createHostedPage(req));
+    }
 
+    public CompletableFuture<CheckPaymentStatusResponse> checkPaymentStatusAsync(CheckPaymentStatusRequest req) {
+        return execution.submit(() -> checkPaymentStatus(req));
+    }
+
+    /**
+     * Live status check for one order (client polls): same transitions and provisioning as a webhook,
+     * but driven by asking the provider. Orders past expiringTime + grace are answered EXPIRED locally.
+     */
+    public CheckPaymentStatusResponse refreshFromProvider(String orderId, String gateway) {
+        return refreshFromProvider(orderId, gateway, false);
+    }
+
+    /**
+     * {@code askPastExpiry}: true for PendingCheckoutReconciler, which must ask the provider even for expired
+     * pages (a payment made just before expiry whose webhook was lost is only found that way).
+     */
+    public CheckPaymentStatusResponse refreshFromProvider(String orderId, String gateway, boolean askPastExpiry) {
+        // 1) Short transaction: terminal or not-yet-created orders never reach the provider
+        LocalCheck local = orderLocks.withOrderLock(orderId, () -> execution.inTransactionSlot(
+                () -> tx.execute(s -> checkLocal(orderId, gateway, askPastExpiry))));
+        if (local.response() != null) {
+            return local.response();
+        }
+
+        // 2) Live check from provider — no transaction / connection held; polls from several tabs coalesce
+        PaymentGateway gw = gatewayRegistry.resolve(gateway);
+        final String hostedpageId = local.providerHostedpageId();
+        GatewayStatusCoalescer.Coalesced<PaymentGateway.HostedPageStatusResult> status = statusCoalescer.get(
+                gateway.toUpperCase(Locale.ROOT) + ":" + hostedpageId,
+                () -> execution.callGateway(() -> gw.getHostedPageStatus(hostedpageId)));
+
+        // 3) Short transaction: apply the provider result under the order lock
+        return orderLocks.withOrderLock(orderId, () -> execution.inTransactionSlot(() -> tx.execute(s ->
+                applyProviderStatus(orderId, status.value(), status.leader()))));
+    }
+
+    /** Either a final response, or the provider hosted page id that needs a live check. */
+    private record LocalCheck(CheckPaymentStatusResponse response, String providerHostedpageId) {}
+
+    private LocalCheck checkLocal(String orderId, String gateway, boolean askPastExpiry) {
+        orderLocks.lockForTransaction(orderId);
         HostedCheckout hc = hostedRepo.findByOrderId(orderId)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown orderId"));
 
@@ -314,50 +429,23 @@ public class CheckoutService {
             throw new IllegalArgumentException("Gateway mismatch for this orderId");
         }
 
-        // Try to pre-resolve plan/subscription for richer responses in all paths
-        BillingEntitySubscription boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(null);
-        PlanDtos.PlanView planView = null;
-        if (boundSub != null && boundSub.getPlan() != null) {
-            planView = planService.toDto(boundSub.getPlan());
-        } else if (StringUtils.hasText(hc.getPlanCode())) {
-            var opt = planRepo.findByExternalPlanCodeAndIsActiveTrue(hc.getPlanCode());
-            if (opt.isPresent()) {
-                planView = planService.toDto(opt.get());
-            }
-        }
-
         // Fast path: terminal local state → no provider call
         PaymentStatus local = mapHostedCheckoutToPaymentStatus(hc.getStatus());
         if (local == PaymentStatus.SUCCESS || local == PaymentStatus.FAILED || local == PaymentStatus.EXPIRED) {
-            if (local == PaymentStatus.SUCCESS) {
-                safeProvision(hc); // idempotent
-                boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(boundSub);
-                if (boundSub != null && boundSub.getPlan() != null) {
-                    planView = planService.toDto(boundSub.getPlan());
-                }
-            }
-            return CheckPaymentStatusResponse.builder()
-                    .orderId(hc.getOrderId())
-                    .gateway(hc.getGateway())
-                    .status(local)
-                    .providerStatusRaw(hc.getProviderStatus())
-                    .hostedUrl(hc.getHostedUrl())
-                    .expiringTime(hc.getExpiringTime() != null ? hc.getExpiringTime().toString() : null)
-                    .message("Resolved from local record")
-                    .plan(planView)
-                    .subscriptionId(boundSub != null ? boundSub.getSubscriptionId() : null)
-                    .subscriptionStatus(boundSub != null && boundSub.getStatus() != null ? boundSub.getStatus().name() : null)
-                    .startDate(boundSub != null && boundSub.getStartDate() != null ? boundSub.getStartDate().toString() : null)
-                    .endDate(boundSub != null && boundSub.getEndDate() != null ? boundSub.getEndDate().toString() : null)
-                    .purchaseDate(boundSub != null && boundSub.getPurchaseDate() != null ? boundSub.getPurchaseDate().toString() : null)
-                    .paidPlan(boundSub != null ? boundSub.getIsPaidPlan() : null)
-                    .zohoSubscriptionId(boundSub != null ? boundSub.getZohoSubscriptionId() : null)
-                    .build();
+            return new LocalCheck(resolvedLocally(hc, local, "Resolved from local record"), null);
+        }
+
+        // Past the stored expiry + sweeper grace → no provider call (the sweeper, when enabled, persists EXPIRED;
+        // a late SUCCESS webhook still wins). Within the grace the provider is still asked.
+        if (!askPastExpiry && hc.getExpiringTime() != null
+                && hc.getExpiringTime().plus(expiryGrace).isBefore(OffsetDateTime.now())) {
+            return new LocalCheck(resolvedLocally(hc, PaymentStatus.EXPIRED, "Hosted page expired"), null);
         }
 
         // No provider id yet → still pending/unknown (race or creation error)
         if (!StringUtils.hasText(hc.getProviderHostedpageId())) {
-            return CheckPaymentStatusResponse.builder()
+            BillingEntitySubscription boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(null);
+            return new LocalCheck(CheckPaymentStatusResponse.builder()
                     .orderId(hc.getOrderId())
                     .gateway(hc.getGateway())
                     .status(PaymentStatus.UNKNOWN)
@@ -365,15 +453,26 @@ public class CheckoutService {
                     .hostedUrl(hc.getHostedUrl())
                     .expiringTime(hc.getExpiringTime() != null ? hc.getExpiringTime().toString() : null)
                     .message("Hosted page not yet created")
-                    .plan(planView)
-                    .build();
+                    .plan(resolvePlanView(hc, boundSub))
+                    .build(), null);
         }
+        return new LocalCheck(null, hc.getProviderHostedpageId());
+    }
 
-        // Live check from provider
-        PaymentGateway gw = gatewayRegistry.resolve(gateway);
-        PaymentGateway.HostedPageStatusResult result = gw.getHostedPageStatus(hc.getProviderHostedpageId());
+    /** {@code recordPayload}: false when the result was shared with another poll that already records it. */
+    private CheckPaymentStatusResponse applyProviderStatus(String orderId,
+                                                           PaymentGateway.HostedPageStatusResult result,
+                                                           boolean recordPayload) {
+        orderLocks.lockForTransaction(orderId);
+        HostedCheckout hc = hostedRepo.findByOrderIdForUpdate(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown orderId"));
 
+        // A webhook may have finished the order while we waited on the provider: never regress it
+        PaymentStatus local = mapHostedCheckoutToPaymentStatus(hc.getStatus());
         PaymentStatus normalized = mapProviderStatus(result.status());
+        if (isFinal(local, normalized)) {
+            return resolvedLocally(hc, local, "Resolved from local record");
+        }
 
         // Persist snapshot for later quick responses / audit
         hc.setProviderStatus(result.status());
@@ -381,24 +480,27 @@ public class CheckoutService {
         if (StringUtils.hasText(result.expiringTime())) {
             hc.setExpiringTime(parseZohoTimeSafe(result.expiringTime()));
         }
-        hc.setStatus(switch (normalized) {
+        boolean moved = updateLocalStatus(hc, switch (normalized) {
             case SUCCESS -> "COMPLETED";
             case FAILED -> "FAILED";
             case EXPIRED -> "EXPIRED";
             case PENDING -> "PENDING";
             default -> "PENDING";
         });
-        hc.setResponsePayloadJson(result.rawResponseJson());
+        if (recordPayload) {
+            appendProviderPayload(hc, ProviderPayloadEventService.SOURCE_STATUS_CHECK, result.rawResponseJson());
+            paymentDetails.record(hc, result.rawResponseJson());
+        }
         hostedRepo.save(hc);
+        if (!moved) {
+            return resolvedLocally(hc, mapHostedCheckoutToPaymentStatus(hc.getStatus()), "Resolved from local record");
+        }
 
         // If SUCCESS → provision (idempotent)
         if (normalized == PaymentStatus.SUCCESS) {
-            safeProvision(hc);
-            boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(boundSub);
-            if (boundSub != null && boundSub.getPlan() != null) {
-                planView = planService.toDto(boundSub.getPlan());
-            }
+            provision(hc);
         }
+        BillingEntitySubscription boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(null);
 
         return CheckPaymentStatusResponse.builder()
                 .orderId(hc.getOrderId())
@@ -408,7 +510,7 @@ public class CheckoutService {
                 .hostedUrl(result.url())
                 .expiringTime(result.expiringTime())
                 .message("Fetched from provider")
-                .plan(planView)
+                .plan(resolvePlanView(hc, boundSub))
                 .subscriptionId(boundSub != null ? boundSub.getSubscriptionId() : null)
                 .subscriptionStatus(boundSub != null && boundSub.getStatus() != null ? boundSub.getStatus().name() : null)
                 .startDate(boundSub != null && boundSub.getStartDate() != null ? boundSub.getStartDate().toString() : null)
@@ -419,14 +521,55 @@ public class CheckoutService {
                 .build();
     }
 
+    /** Response for a terminal local state; provisions (once) when SUCCESS and not yet provisioned. */
+    private CheckPaymentStatusResponse resolvedLocally(HostedCheckout hc, PaymentStatus local, String message) {
+        BillingEntitySubscription boundSub = billingSubRepo.findByActivationOrderId(hc.getOrderId()).orElse(null);
+        if (local == PaymentStatus.SUCCESS && boundSub == null) {
+            provision(hc);
+            boundSub = billingSubRepo.findByActivationOrderId(hc.getOrderId()).orElse(null);
+        }
+        return CheckPaymentStatusResponse.builder()
+                .orderId(hc.getOrderId())
+                .gateway(hc.getGateway())
+                .status(local)
+                .providerStatusRaw(hc.getProviderStatus())
+                .hostedUrl(hc.getHostedUrl())
+                .expiringTime(hc.getExpiringTime() != null ? hc.getExpiringTime().toString() : null)
+                .message(message)
+                .plan(resolvePlanView(hc, boundSub))
+                .subscriptionId(boundSub != null ? boundSub.getSubscriptionId() : null)
+                .subscriptionStatus(boundSub != null && boundSub.getStatus() != null ? boundSub.getStatus().name() : null)
+                .startDate(boundSub != null && boundSub.getStartDate() != null ? boundSub.getStartDate().toString() : null)
+                .endDate(boundSub != null && boundSub.getEndDate() != null ? boundSub.getEndDate().toString() : null)
+                .purchaseDate(boundSub != null && boundSub.getPurchaseDate() != null ? boundSub.getPurchaseDate().toString() : null)
+                .paidPlan(boundSub != null ? boundSub.getIsPaidPlan() : null)
+                .zohoSubscriptionId(boundSub != null ? boundSub.getZohoSubscriptionId() : null)
+                .build();
+    }
+
+    /** Plan view for responses: the bound subscription's plan, else the checkout's (active) plan code. */
+    private PlanDtos.PlanView resolvePlanView(HostedCheckout hc, BillingEntitySubscription boundSub) {
+        if (boundSub != null && boundSub.getPlan() != null) {
+            return planViews.get(boundSub.getPlan());
+        }
+        if (StringUtils.hasText(hc.getPlanCode())) {
+            return planCatalog.findActiveByCode(hc.getPlanCode()).map(PlanCatalogCache.CatalogPlan::view).orElse(null);
+        }
+        return null;
+    }
+
     /**
      * Local-only payment status check (no provider call). If local is SUCCESS, still provisions idempotently.
      */
-    @Transactional
     public CheckPaymentStatusResponse checkPaymentStatusLocalOnly(CheckPaymentStatusRequest req) {
         final String orderId = req.getOrderId().trim();
         final String gateway = StringUtils.hasText(req.getGateway()) ? req.getGateway().trim() : "ZOHOBILLING";
+        return orderLocks.withOrderLock(orderId,
+                () -> execution.inTransactionSlot(() -> tx.execute(s -> localOnlyStatus(orderId, gateway))));
+    }
 
+    private CheckPaymentStatusResponse localOnlyStatus(String orderId, String gateway) {
+        orderLocks.lockForTransaction(orderId);
         HostedCheckout hc = hostedRepo.findByOrderId(orderId)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown orderId"));
 
@@ -437,22 +580,22 @@ public class CheckoutService {
         PlanDtos.PlanView planView = null;
         BillingEntitySubscription boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(null);
         if (boundSub != null && boundSub.getPlan() != null) {
-            planView = planService.toDto(boundSub.getPlan());
+            planView = planViews.get(boundSub.getPlan());
         } else if (StringUtils.hasText(hc.getPlanCode())) {
-            var opt = planRepo.findByExternalPlanCodeAndIsActiveTrue(hc.getPlanCode());
+            var opt = planCatalog.findActiveByCode(hc.getPlanCode());
             if (opt.isPresent()) {
-                planView = planService.toDto(opt.get());
+                planView = planViews.get(opt.get());
             }
         }
 
         PaymentStatus local = mapHostedCheckoutToPaymentStatus(hc.getStatus());
 
         if (local == PaymentStatus.SUCCESS || local == PaymentStatus.FAILED || local == PaymentStatus.EXPIRED) {
-            if (local == PaymentStatus.SUCCESS) {
-                safeProvision(hc);
-                boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(boundSub);
+            if (local == PaymentStatus.SUCCESS && boundSub == null) {
+                provision(hc);
+                boundSub = billingSubRepo.findByActivationOrderId(orderId).orElse(null);
                 if (boundSub != null && boundSub.getPlan() != null) {
-                    planView = planService.toDto(boundSub.getPlan());
+                    planView = planViews.get(boundSub.getPlan());
                 }
             }
             return CheckPaymentStatusResponse.builder()
@@ -475,6 +618,10 @@ public class CheckoutService {
         }
 
         PaymentStatus pendingish = (local == PaymentStatus.UNKNOWN) ? PaymentStatus.UNKNOWN : PaymentStatus.PENDING;
+        if (hc.getExpiringTime() != null && hc.getExpiringTime().plus(expiryGrace).isBefore(OffsetDateTime.now())) {
+            // past stored expiry + grace, as in checkLocal; the sweeper, when enabled, persists it
+            pendingish = PaymentStatus.EXPIRED;
+        }
 
         return CheckPaymentStatusResponse.builder()
                 .orderId(hc.getOrderId())
@@ -491,13 +638,97 @@ public class CheckoutService {
     // ---------------------------------------------------------------------
     // WEBHOOK: provider → our system (source of truth)
     // ---------------------------------------------------------------------
-    @Transactional
     public WebhookResult processPaymentWebhook(MultiValueMap<String, String> headers, String rawBody) {
-        final String provider = detectProvider(headers, rawBody); // considers payment fields too
+        return processPaymentWebhook(ParsedWebhook.parse(headers, rawBody));
+    }
+
+    /**
+     * Order a webhook belongs to: reference_id/orderId on hostedpage payloads, else (Zoho "payment" payloads)
+     * looked up by hosted_page_id. Also used by the async inbox so both payload shapes share one ordering key.
+     */
+    public Optional<String> resolveOrderId(ParsedWebhook wh) {
+        // 1) Old way (reference_id/orderId on hostedpage payloads)
+        if (StringUtils.hasText(wh.orderId())) return Optional.of(wh.orderId());
+
+        // 2) Preferred for Zoho “payment” payload → correlate by hosted_page_id
+        if (!wh.paymentPayload()) return Optional.empty();
+        String hostedpageId = wh.paymentHostedpageId();
+        if (!StringUtils.hasText(hostedpageId)) return Optional.empty();
+        // FIRST try decrypted-hostedpage-id (your hosted_page_id)
+        List<String> ids = hostedRepo.findOrderIdsByProviderDecryptedHostedpageId(hostedpageId);
+        // FALLBACK to providerHostedpageId (if older rows captured only encrypted id)
+        if (ids.isEmpty()) {
+            ids = hostedRepo.findOrderIdsByProviderHostedpageId(hostedpageId);
+        }
+        return ids.isEmpty() ? Optional.empty() : Optional.of(ids.get(0));
+    }
+
+    /**
+     * Webhook processing over a body that was parsed once (see ParsedWebhook). Validation and correlation run
+     * without a transaction; the state change runs in one short transaction entered after the order lock.
+     */
+    public WebhookResult processPaymentWebhook(ParsedWebhook wh) {
+        WebhookResult rejected = rejectInvalid(wh);
+        if (rejected != null) return rejected;
+
+        final String provider = wh.provider(); // considers payment fields too
+        final String orderId = resolveOrderId(wh).orElse(null);
+        if (!StringUtils.hasText(orderId)) {
+            log.warn("Webhook missing correlator (orderId/hosted_page_id). Payload: {}", redact(wh.rawBody()));
+            return WebhookResult.builder()
+                    .accepted(false)
+                    .message("missing orderId")
+                    .provider(provider)
+                    .build();
+        }
+
+        return orderLocks.withOrderLock(orderId, () -> tx.execute(s -> applyWebhook(wh, orderId, provider)));
+    }
+
+    /**
+     * Bulk replay: apply several webhooks of one order in the given order, in ONE transaction under one order lock.
+     * Each is validated like processPaymentWebhook; one that does not resolve to {@code orderId} is rejected.
+     * Results are positional. Any failure rolls back the whole group (callers then fall back to
+     * processPaymentWebhook per webhook).
+     */
+    public List<WebhookResult> processOrderWebhooks(String orderId, List<ParsedWebhook> webhooks) {
+        WebhookResult[] results = new WebhookResult[webhooks.size()];
+        List<Integer> valid = new ArrayList<>(webhooks.size());
+        for (int i = 0; i < webhooks.size(); i++) {
+            ParsedWebhook wh = webhooks.get(i);
+            WebhookResult rejected = rejectInvalid(wh);
+            if (rejected == null && !orderId.equals(resolveOrderId(wh).orElse(null))) {
+                rejected = WebhookResult.builder()
+                        .accepted(false)
+                        .message("orderId mismatch")
+                        .provider(wh.provider())
+                        .build();
+            }
+            if (rejected != null) {
+                results[i] = rejected;
+            } else {
+                valid.add(i);
+            }
+        }
+        if (!valid.isEmpty()) {
+            orderLocks.withOrderLock(orderId, () -> tx.execute(s -> {
+                for (int i : valid) {
+                    ParsedWebhook wh = webhooks.get(i);
+                    results[i] = applyWebhook(wh, orderId, wh.provider());
+                }
+                return null;
+            }));
+        }
+        return Arrays.asList(results);
+    }
+
+    /** Signature and JSON checks shared by the webhook entry points; null when the webhook may be applied. */
+    private WebhookResult rejectInvalid(ParsedWebhook wh) {
+        final String provider = wh.provider();
 
         // Optional HMAC validation for Zoho
-        if (StringUtils.hasText(zohoWebhookSecret)) {
-            if (!validateZohoSignature(headers, rawBody, zohoWebhookSecret)) {
+        if (signatureVerifier.isConfigured()) {
+            if (!validateZohoSignature(wh)) {
                 log.warn("Webhook signature invalid. Rejecting.");
                 return WebhookResult.builder()
                         .accepted(false)
@@ -509,45 +740,19 @@ public class CheckoutService {
             log.warn("Webhook secret not configured; accepting without signature validation.");
         }
 
-        Map<String, Object> root = parseJsonSafely(rawBody);
-        if (root == null) {
+        if (!wh.validJson()) {
+            log.warn("Failed to parse webhook JSON. Payload: {}", redact(wh.rawBody()));
             return WebhookResult.builder().accepted(false).message("invalid json").provider(provider).build();
         }
+        return null;
+    }
 
-        // 1) Old way (reference_id/orderId on hostedpage payloads)
-        String orderId = extractOrderId(root);
-
-        // 2) Preferred for Zoho “payment” payload → correlate by hosted_page_id
-        HostedCheckout hc = null;
-        if (!StringUtils.hasText(orderId) && isZohoPaymentPayload(root)) {
-            String hostedpageId = extractHostedpageIdFromPayment(root);
-            if (StringUtils.hasText(hostedpageId)) {
-                // FIRST try decrypted-hostedpage-id (your hosted_page_id)
-                hc = hostedRepo.findFirstByProviderDecryptedHostedpageId(hostedpageId).orElse(null);
-                // FALLBACK to providerHostedpageId (if older rows captured only encrypted id)
-                if (hc == null) {
-                    hc = hostedRepo.findFirstByProviderHostedpageId(hostedpageId).orElse(null);
-                }
-                if (hc != null) {
-                    orderId = hc.getOrderId();
-                }
-            }
-        }
-
-        if (!StringUtils.hasText(orderId)) {
-            log.warn("Webhook missing correlator (orderId/hosted_page_id). Payload: {}", redact(rawBody));
-            return WebhookResult.builder()
-                    .accepted(false)
-                    .message("missing orderId")
-                    .provider(provider)
-                    .build();
-        }
-
-        if (hc == null) {
-            hc = hostedRepo.findByOrderId(orderId).orElse(null);
-        }
+    private WebhookResult applyWebhook(ParsedWebhook wh, String orderId, String provider) {
+        // Serialize with concurrent webhooks / polls for this order; load only after the lock
+        orderLocks.lockForTransaction(orderId);
+        HostedCheckout hc = hostedRepo.findByOrderIdForUpdate(orderId).orElse(null);
         if (hc == null) {
-            log.warn("HostedCheckout not found for orderId={}. Payload: {}", orderId, redact(rawBody));
+            log.warn("HostedCheckout not found for orderId={}. Payload: {}", orderId, redact(wh.rawBody()));
             return WebhookResult.builder()
                     .accepted(false)
                     .message("hosted checkout not found")
@@ -556,13 +761,22 @@ public class CheckoutService {
                     .build();
         }
 
-        // Idempotency: if terminal, no-op (but append payload for audit)
+        // Normalize provider status (works for hostedpage and payment payloads)
+        String providerStatus = wh.providerStatus();
+        PaymentStatus normalized = mapProviderStatus(providerStatus);
+        if (normalized == PaymentStatus.UNKNOWN) {
+            normalized = PaymentStatus.PENDING;
+        }
+
+        // Idempotency: if terminal, no-op (but append payload for audit).
+        // Exception: a locally inferred EXPIRED (expiry sweep) is overridden by a provider SUCCESS.
         PaymentStatus current = mapHostedCheckoutToPaymentStatus(hc.getStatus());
-        if (current == PaymentStatus.SUCCESS || current == PaymentStatus.FAILED || current == PaymentStatus.EXPIRED) {
-            appendProviderPayload(hc, rawBody);
+        if (isFinal(current, normalized)) {
+            appendProviderPayload(hc, ProviderPayloadEventService.SOURCE_WEBHOOK, wh.rawBody());
+            paymentDetails.record(hc, wh.payment());
             hostedRepo.save(hc);
             if (current == PaymentStatus.SUCCESS) {
-                safeProvision(hc); // idempotent
+                provision(hc); // insert-first: a no-op when the order is already provisioned
             }
             return WebhookResult.builder()
                     .accepted(true)
@@ -573,17 +787,8 @@ public class CheckoutService {
                     .build();
         }
 
-        // Normalize provider status (works for hostedpage and payment payloads)
-        String providerStatus = extractProviderStatus(root);
-        PaymentStatus normalized = mapProviderStatus(providerStatus);
-        if (normalized == PaymentStatus.UNKNOWN) {
-            normalized = PaymentStatus.PENDING;
-        }
-
         // --- Capture / compare hosted_page_id (prefer payment payload) ---
-        String hostedpageIdFromPayment = isZohoPaymentPayload(root) ? extractHostedpageIdFromPayment(root) : null;
-        String hostedpageIdGeneric = extractHostedpageId(root);
-        String hostedpageIdObserved = StringUtils.hasText(hostedpageIdFromPayment) ? hostedpageIdFromPayment : hostedpageIdGeneric;
+        String hostedpageIdObserved = wh.hostedpageId();
 
         if (StringUtils.hasText(hostedpageIdObserved)) {
             if (!StringUtils.hasText(hc.getProviderDecryptedHostedpageId())) {
@@ -599,7 +804,7 @@ public class CheckoutService {
 
         // Update + audit
         hc.setProviderStatus(providerStatus);
-        hc.setStatus(switch (normalized) {
+        boolean moved = updateLocalStatus(hc, switch (normalized) {
             case SUCCESS -> "COMPLETED";
             case FAILED -> "FAILED";
             case EXPIRED -> "EXPIRED";
@@ -608,25 +813,34 @@ public class CheckoutService {
         });
 
         // Best-effort: store Zoho subscription id from payment payload
-        if (isZohoPaymentPayload(root)) {
-            String zohoSubId = extractZohoSubscriptionIdFromPayment(root);
-            setZohoSubscriptionIdIfPresent(hc, zohoSubId);
+        if (wh.paymentPayload()) {
+            setZohoSubscriptionIdIfPresent(hc, wh.zohoSubscriptionId());
         }
 
-        appendProviderPayload(hc, rawBody);
+        appendProviderPayload(hc, ProviderPayloadEventService.SOURCE_WEBHOOK, wh.rawBody());
+        paymentDetails.record(hc, wh.payment());
         hostedRepo.save(hc);
+        if (!moved) {
+            return WebhookResult.builder()
+                    .accepted(true)
+                    .message("already terminal")
+                    .provider(provider)
+                    .orderId(hc.getOrderId())
+                    .normalizedStatus(mapHostedCheckoutToPaymentStatus(hc.getStatus()))
+                    .build();
+        }
 
         log.info("Webhook updated orderId={} → status={} (providerStatus={})", hc.getOrderId(), normalized, providerStatus);
 
         // Provision after SUCCESS (idempotent, same-plan-only replacement inside service)
         if (normalized == PaymentStatus.SUCCESS) {
-            safeProvision(hc);
+            provision(hc);
         }
 
         return WebhookResult.builder()
                 .accepted(true)
                 .message("ok")
-                .provider(detectProvider(headers, rawBody))
+                .provider(provider)
                 .orderId(hc.getOrderId())
                 .normalizedStatus(normalized)
                 .build();
@@ -720,12 +934,59 @@ public class CheckoutService {
         return be;
     }
 
-    private void safeProvision(HostedCheckout hc) {
-        try {
-            subscriptionProvisioningService.activateFromSuccessfulCheckout(hc);
-        } catch (Exception e) {
-            log.error("Provisioning failed for orderId={} : {}", hc.getOrderId(), e.getMessage(), e);
+    /** True when the local status is terminal and the incoming one must not change it. */
+    private boolean isFinal(PaymentStatus local, PaymentStatus incoming) {
+        if (local == PaymentStatus.EXPIRED) {
+            return incoming != PaymentStatus.SUCCESS; // paid at the provider after local expiry
         }
+        return local == PaymentStatus.SUCCESS || local == PaymentStatus.FAILED;
+    }
+
+    /**
+     * Single place that changes HostedCheckout.status, so status counters stay in step. The status write and the
+     * counter delta always go together: the delta comes from a conditional UPDATE, and a lost compare-and-set
+     * (the row moved since it was loaded) is redone from the row's current status under its row lock, or
+     * abandoned when that status is final for this transition.
+     * @return false when the transition was abandoned; {@code hc} then carries the row's current status.
+     */
+    private boolean updateLocalStatus(HostedCheckout hc, String newStatus) {
+        String previous = hc.getStatus();
+        if (Objects.equals(previous, newStatus)) return true;
+        if (hc.getId() == null) {
+            hc.setStatus(newStatus); // not inserted yet: nothing counted
+            return true;
+        }
+        if (previous != null && hostedRepo.updateStatusIf(hc.getId(), previous, newStatus) == 0) {
+            String current = hostedRepo.lockStatus(hc.getId());
+            hc.setStatus(current); // never flush the stale status back over the row
+            if (Objects.equals(current, newStatus)) return true;
+            if (current == null
+                    || isFinal(mapHostedCheckoutToPaymentStatus(current), mapHostedCheckoutToPaymentStatus(newStatus))
+                    || hostedRepo.updateStatusIf(hc.getId(), current, newStatus) == 0) {
+                log.warn("HostedCheckout orderId={} moved from {} to {} meanwhile; not moving it to {}",
+                        hc.getOrderId(), previous, current, newStatus);
+                return false;
+            }
+            previous = current;
+        }
+        hc.setStatus(newStatus);
+        countService.recordTransition(hc.getTenantId(), hc.getBillingId(), previous, newStatus);
+        return true;
+    }
+
+    /**
+     * Provision the subscription for a COMPLETED order, in the caller's transaction (which holds the order lock):
+     * either the COMPLETED transition and the subscription commit together or neither does.
+     * - Outbox mode: enqueue a task; ProvisioningOutboxWorker activates off the request path, with retries.
+     * - Inline mode: activate now; a failure rolls back the whole unit and surfaces to the caller
+     *   (webhook / poll), which retries.
+     */
+    private void provision(HostedCheckout hc) {
+        if (provisioningOutbox) {
+            provisioningTasks.enqueue(hc.getOrderId());
+            return;
+        }
+        subscriptionProvisioningService.activateFromSuccessfulCheckout(hc);
     }
 
     private String trim(String s) {
@@ -759,9 +1020,9 @@ public class CheckoutService {
         if (StringUtils.hasText(v)) map.put(k, v.trim());
     }
 
-    private String writeJsonSafe(Object o) {
+    private String writeJsonSafe(Map<String, ?> o) {
         try {
-            return objectMapper.writeValueAsString(o);
+            return json.writeObjectMap(o);
         } catch (Exception e) {
             return "{}";
         }
@@ -807,108 +1068,18 @@ public class CheckoutService {
 
     // ---- Webhook helpers ----
 
-    private boolean validateZohoSignature(MultiValueMap<String, String> headers, String body, String secret) {
-        String provided = headerFirst(headers, "X-Zoho-Webhook-Signature");
-        if (!StringUtils.hasText(provided)) provided = headerFirst(headers, "x-zoho-webhook-signature");
-        if (!StringUtils.hasText(provided)) return false;
-
+    private boolean validateZohoSignature(ParsedWebhook wh) {
         try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-            byte[] digest = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
-            String computed = bytesToHex(digest);
-            boolean ok = provided.equalsIgnoreCase(computed);
-            if (!ok) {
-                log.warn("Zoho signature mismatch. provided={}, computed={}", provided, computed);
-            }
-            return ok;
+            return signatureVerifier.verify(wh);
         } catch (Exception e) {
             log.error("Error validating Zoho signature", e);
             return false;
         }
     }
 
-    private String detectProvider(MultiValueMap<String, String> headers, String rawBody) {
-        String fromHeader = headerFirst(headers, "X-Provider");
-        Map<String, Object> root = parseJsonSafely(rawBody);
-        if (root != null && isZohoPaymentPayload(root)) {
-            String fromPayment = extractProviderFromPayment(root);
-            if (StringUtils.hasText(fromPayment)) return fromPayment;
-        }
-        return StringUtils.hasText(fromHeader) ? fromHeader : "ZOHOBILLING";
-    }
-
-    private String headerFirst(MultiValueMap<String, String> headers, String key) {
-        if (headers == null || key == null) return null;
-        var list = headers.get(key);
-        return (list == null || list.isEmpty()) ? null : list.get(0);
-    }
-
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> parseJsonSafely(String raw) {
-        try {
-            return objectMapper.readValue(raw, Map.class);
-        } catch (Exception e) {
-            log.warn("Failed to parse webhook JSON", e);
-            return null;
-        }
-    }
-
-    private String extractHostedpageId(Map<String, Object> root) {
-        String id = extractHostedpageIdFromPayment(root);
-        if (!StringUtils.hasText(id)) id = tryExtract(root, "data.hostedpage.hostedpage_id");
-        if (!StringUtils.hasText(id)) id = tryExtract(root, "data.hostedpage.id");
-        if (!StringUtils.hasText(id)) id = tryExtract(root, "hostedpage_id");
-        if (!StringUtils.hasText(id)) id = tryExtract(root, "hostedpage.id");
-        return id;
-    }
-
-    private String extractProviderStatus(Map<String, Object> root) {
-        String s = extractProviderStatusFromPayment(root);
-        if (!StringUtils.hasText(s)) s = tryExtract(root, "data.hostedpage.status");
-        if (!StringUtils.hasText(s)) s = tryExtract(root, "hostedpage.status");
-        if (!StringUtils.hasText(s)) s = tryExtract(root, "status");
-        return s;
-    }
-
-    private String extractOrderId(Map<String, Object> root) {
-        String s = tryExtract(root, "data.hostedpage.reference_id");
-        if (!StringUtils.hasText(s)) s = tryExtract(root, "hostedpage.reference_id");
-        if (!StringUtils.hasText(s)) s = tryExtract(root, "orderId");
-        if (!StringUtils.hasText(s)) s = tryExtract(root, "data.order_id");
-        return s;
-    }
-
-    @SuppressWarnings("unchecked")
-    private String tryExtract(Object node, String path) {
-        if (!(node instanceof Map)) return null;
-        String[] parts = path.split("\\.");
-        Object cur = node;
-        for (String p : parts) {
-            if (!(cur instanceof Map)) return null;
-            cur = ((Map<String, Object>) cur).get(p);
-            if (cur == null) return null;
-        }
-        return (cur instanceof String) ? (String) cur : String.valueOf(cur);
-    }
-
-    private void appendProviderPayload(HostedCheckout hc, String raw) {
-        String prev = hc.getResponsePayloadJson();
-        if (!StringUtils.hasText(prev)) {
-            hc.setResponsePayloadJson(raw);
-            return;
-        }
-        String merged = prev + "\n\n---\n\n" + raw;
-        if (merged.length() > 200_000) {
-            merged = merged.substring(merged.length() - 200_000);
-        }
-        hc.setResponsePayloadJson(merged);
-    }
-
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) sb.append(String.format("%02x", b));
-        return sb.toString();
+    /** Store one provider payload as its own event row (responsePayloadJson is legacy, read-only). */
+    private void appendProviderPayload(HostedCheckout hc, String source, String raw) {
+        payloadEvents.append(hc.getOrderId(), source, raw);
     }
 
     private String redact(String in) {
@@ -916,70 +1087,6 @@ public class CheckoutService {
         return in.length() > 4000 ? in.substring(0, 4000) + "...(truncated)" : in;
     }
 
-    // -------------------- Payment-payload helpers --------------------
-
-    @SuppressWarnings("unchecked")
-    private boolean isZohoPaymentPayload(Map<String, Object> root) {
-        return root.get("payment") instanceof Map;
-    }
-
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> getPayment(Map<String, Object> root) {
-        Object p = root.get("payment");
-        return (p instanceof Map) ? (Map<String, Object>) p : Map.of();
-    }
-
-    @SuppressWarnings("unchecked")
-    private String extractHostedpageIdFromPayment(Map<String, Object> root) {
-        Map<String, Object> p = getPayment(root);
-        Object invoices = p.get("invoices");
-        if (!(invoices instanceof List<?> list) || list.isEmpty()) return null;
-        Object first = list.get(0);
-        if (!(first instanceof Map<?, ?> m)) return null;
-        Object v = ((Map<String, Object>) m).get("hosted_page_id");
-        return (v == null) ? null : String.valueOf(v);
-    }
-
-    private String extractProviderStatusFromPayment(Map<String, Object> root) {
-        Map<String, Object> p = getPayment(root);
-        String s = asText(p.get("payment_status")); // "paid"
-        if (!StringUtils.hasText(s)) s = asText(p.get("status")); // often "success"
-        return s;
-    }
-
-    private String extractProviderFromPayment(Map<String, Object> root) {
-        Map<String, Object> p = getPayment(root);
-        String v = asText(tryGet(p, "autotransaction", "payment_gateway")); // "test_gateway"
-        if (!StringUtils.hasText(v)) v = asText(p.get("payment_mode"));
-        return v;
-    }
-
-    @SuppressWarnings("unchecked")
-    private String extractZohoSubscriptionIdFromPayment(Map<String, Object> root) {
-        Map<String, Object> p = getPayment(root);
-        Object invoices = p.get("invoices");
-        if (!(invoices instanceof List<?> list) || list.isEmpty()) return null;
-        Object first = list.get(0);
-        if (!(first instanceof Map<?, ?> m)) return null;
-        Object subs = ((Map<String, Object>) m).get("subscription_ids");
-        if (subs instanceof List<?> l && !l.isEmpty()) {
-            Object id0 = l.get(0);
-            return (id0 == null) ? null : String.valueOf(id0);
-        }
-        return null;
-    }
-
-    private String asText(Object o) {
-        return (o == null) ? null : String.valueOf(o);
-    }
-
-    @SuppressWarnings("unchecked")
-    private Object tryGet(Map<String, Object> map, String key, String nestedKey) {
-        Object inner = map.get(key);
-        if (!(inner instanceof Map)) return null;
-        return ((Map<String, Object>) inner).get(nestedKey);
-    }
-
     /**
      * Best-effort setter: if HostedCheckout has setZohoSubscriptionId(String),
      * call it reflectively; else no-op.